@@ -4,40 +4,178 @@ import android.graphics.Canvas;
 import android.util.Log;
 import android.view.SurfaceHolder;
 
+import fr.ravenfeld.example.livewallpaper.frame.FrameRateGovernor;
+import fr.ravenfeld.example.livewallpaper.frame.FrameScheduler;
+import fr.ravenfeld.example.livewallpaper.frame.FrameStats;
+
 public class AnimationThread extends Thread {
 
     private static final String TAG = "AnimationThread";
 
+    public static final int DEFAULT_FPS = 30;
+
+    // wait after a lockCanvas without canvas, doubled at each failure in a row
+    private static final long MIN_LOCK_BACKOFF_MILLIS = 4;
+    private static final long MAX_LOCK_BACKOFF_MILLIS = 256;
+
     private Object mPauseLock = new Object();
 
     private boolean mRunning = true;
     private boolean mPaused = true;
-
-    private int fps = 30;
-    private int mTimeFrame = 1000 / fps; // drawing time frame in miliseconds 1000 ms / fps
+    private boolean mRenderRequested = false;
+    private boolean mHasSurface = false;
+    // true between lockCanvas and unlockCanvasAndPost
+    private boolean mDrawing = false;
+    // true while the thread waits for the next frame, the only wait interrupted by a pause
+    private boolean mWaitingForFrame = false;
+    // times of the last visibility requests, 0 once the thread has applied them
+    private long mPauseRequestNanos = 0;
+    private long mResumeRequestNanos = 0;
+    private long mLockBackoffMillis = MIN_LOCK_BACKOFF_MILLIS;
 
     private SurfaceHolder mSurfaceHolder;
     private Scene mScene;
+    private FrameScheduler mFrameScheduler;
+    private volatile FrameRateGovernor mFrameRateGovernor;
+    private volatile OnFrameListener mOnFrameListener;
+    private Runnable mStartupTask;
+    private volatile long mFirstFrameTimeNanos = 0;
+    private final FrameStats mFrameStats = new FrameStats();
 
-    AnimationThread(SurfaceHolder surfaceHolder, Scene scene) {
+    AnimationThread(SurfaceHolder surfaceHolder, Scene scene, FrameScheduler frameScheduler) {
         this.mSurfaceHolder = surfaceHolder;
         this.mScene = scene;
+        this.mFrameScheduler = frameScheduler;
+
+        mScene.setOnInvalidateListener(new Scene.OnInvalidateListener() {
+            @Override
+            public void onInvalidate() {
+                requestRender();
+            }
+        });
+    }
 
+    public FrameScheduler getFrameScheduler() {
+        return mFrameScheduler;
+    }
+
+    /**
+     * Lets the governor choose the frame rate, which is applied from the next frame.
+     */
+    public void setFrameRateGovernor(FrameRateGovernor governor) {
+        mFrameRateGovernor = governor;
+    }
+
+    public FrameStats getFrameStats() {
+        return mFrameStats;
+    }
+
+    /**
+     * Registers work run on this thread before the first frame, to keep it off the main thread.
+     * Must be called before the thread is started.
+     */
+    public void setStartupTask(Runnable task) {
+        mStartupTask = task;
+    }
+
+    /**
+     * @return the time at which the first frame was posted, in the {@link System#nanoTime()}
+     * base, 0 while no frame was posted
+     */
+    public long getFirstFrameTimeNanos() {
+        return mFirstFrameTimeNanos;
+    }
+
+    /**
+     * Registers a callback run on this thread at the start of every frame, before the scene is
+     * updated and drawn, e.g. to advance the gesture animations in phase with the rendering.
+     */
+    public void setOnFrameListener(OnFrameListener listener) {
+        mOnFrameListener = listener;
     }
 
     @Override
     public void run() {
 
+        try {
+            if (mStartupTask != null) {
+                mStartupTask.run();
+                mStartupTask = null;
+            }
+            loop();
+        } finally {
+            mFrameScheduler.release();
+        }
+
+    }
+
+    private void loop() {
+
         while (mRunning) {
 
-            waitOnPause();
+            if (waitOnPause()) {
+                // the pause must not be accounted as missed frames
+                mFrameScheduler.reset();
+            }
 
             if (!mRunning) {
                 return;
             }
 
-            long beforeDrawTime = System.currentTimeMillis();
+            synchronized (mPauseLock) {
+                if (mPaused || !mHasSurface || !mRunning) {
+                    continue;
+                }
+                mWaitingForFrame = true;
+            }
 
+            long frameTimeNanos;
+            try {
+                frameTimeNanos = mFrameScheduler.awaitFrame();
+            } catch (InterruptedException ex) {
+                // interrupted by pauseThread() or stopThread(): the loop parks or returns
+                continue;
+            } finally {
+                endFrameWait();
+            }
+
+            if (!mRunning) {
+                return;
+            }
+
+            OnFrameListener listener = mOnFrameListener;
+            if (listener != null) {
+                listener.onFrame(frameTimeNanos);
+            }
+
+            FrameRateGovernor governor = mFrameRateGovernor;
+            if (governor != null) {
+                int fps = governor.computeFrameRate(mFrameScheduler.getMissedFrames());
+                if (fps != mFrameScheduler.getFrameRate()) {
+                    mFrameScheduler.setFrameRate(fps);
+                }
+            }
+
+            if (!mScene.hasChanged()) {
+                // nothing to draw: sleep until the scene is invalidated
+                if (waitOnRenderRequest()) {
+                    mFrameScheduler.reset();
+                }
+                continue;
+            }
+
+            synchronized (mPauseLock) {
+                if (mPaused || !mHasSurface || !mRunning) {
+                    continue;
+                }
+                mDrawing = true;
+            }
+
+            final long lockStart = System.nanoTime();
+            long updateStart = 0;
+            long drawStart = 0;
+            long postStart = 0;
+            boolean drawn = false;
             Canvas canvas = null;
             try {
 
@@ -45,17 +183,25 @@ public class AnimationThread extends Thread {
 
                 /** Workaround for: SurfaceTextureClient: dequeueBuffer failed (No such device) */
                 if (canvas == null) {
+                    mFrameStats.recordFailedLock();
+                    endDrawing();
+                    waitLockBackoff();
                     continue;
                 }
+                mLockBackoffMillis = MIN_LOCK_BACKOFF_MILLIS;
 
-                mScene.update();
+                updateStart = System.nanoTime();
+                mScene.update(frameTimeNanos);
+                drawStart = System.nanoTime();
                 mScene.draw(canvas);
+                drawn = true;
 
             } catch (IllegalArgumentException e) {
                 Log.e(TAG, "Error during surfaceHolder.lockCanvas()", e);
                 stopThread();
             } finally {
                 if (canvas != null) {
+                    postStart = System.nanoTime();
                     try {
                         mSurfaceHolder.unlockCanvasAndPost(canvas);
                     } catch (IllegalArgumentException e) {
@@ -63,16 +209,26 @@ public class AnimationThread extends Thread {
                         stopThread();
                     }
                 }
+                endDrawing();
             }
 
-            long afterDrawTime = System.currentTimeMillis() - beforeDrawTime;
-            try {
-                if (mTimeFrame > afterDrawTime) {
-                    Thread.sleep(mTimeFrame - afterDrawTime);
+            if (drawn && mRunning) {
+                final long postEnd = System.nanoTime();
+                if (mFirstFrameTimeNanos == 0) {
+                    mFirstFrameTimeNanos = postEnd;
                 }
-            } catch (InterruptedException ex) {
-                Log.e(TAG, "Exception during Thread.sleep().", ex);
+                long resumeRequest;
+                synchronized (mPauseLock) {
+                    resumeRequest = mResumeRequestNanos;
+                    mResumeRequestNanos = 0;
+                }
+                if (resumeRequest != 0) {
+                    mFrameStats.recordShowToFirstFrame(postEnd - resumeRequest);
+                }
+                mFrameStats.recordFrame(frameTimeNanos, mFrameScheduler.getFrameIntervalNanos(),
+                        lockStart, updateStart, drawStart, postStart, postEnd);
             }
+            mFrameStats.setDroppedFrames(mFrameScheduler.getMissedFrames());
 
         }
 
@@ -83,31 +239,169 @@ public class AnimationThread extends Thread {
             mPaused = false;
             mRunning = false;
             mPauseLock.notifyAll();
+            interruptFrameWaitLocked();
         }
     }
 
+    /**
+     * Tells the thread whether the surface can be drawn. When the surface goes away, returns
+     * once the thread is done with it, as required by
+     * {@link SurfaceHolder.Callback#surfaceDestroyed(SurfaceHolder)}.
+     */
+    public void setSurfaceAvailable(boolean available) {
+        boolean interrupted = false;
+        synchronized (mPauseLock) {
+            mHasSurface = available;
+            mPauseLock.notifyAll();
+            if (!available) {
+                interruptFrameWaitLocked();
+            }
+            while (!available && mDrawing) {
+                try {
+                    mPauseLock.wait();
+                } catch (InterruptedException e) {
+                    // the surface must not be released while drawn, keep waiting
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Parks the thread. A pending frame wait is interrupted, and no canvas is locked once this
+     * method returns; a frame already being drawn is still posted.
+     */
     public void pauseThread() {
         synchronized (mPauseLock) {
-            mPaused = true;
+            if (!mPaused) {
+                mPaused = true;
+                mPauseRequestNanos = System.nanoTime();
+                // a show which did not reach its first frame is not measured
+                mResumeRequestNanos = 0;
+            }
+            mPauseLock.notifyAll();
+            interruptFrameWaitLocked();
         }
     }
 
     public void resumeThread() {
         synchronized (mPauseLock) {
-            mPaused = false;
+            if (mPaused) {
+                mPaused = false;
+                mResumeRequestNanos = System.nanoTime();
+                mPauseRequestNanos = 0;
+            }
+            mPauseLock.notifyAll();
+        }
+    }
+
+    /**
+     * Wakes up the thread when it is waiting for a change of the scene, e.g. when an
+     * animation driven by the {@link OnFrameListener} has been started.
+     */
+    public void requestRender() {
+        synchronized (mPauseLock) {
+            mRenderRequested = true;
             mPauseLock.notifyAll();
         }
     }
 
-    private void waitOnPause() {
+    private void interruptFrameWaitLocked() {
+        // the other waits of the thread are on mPauseLock and woken up by notifyAll()
+        if (mWaitingForFrame) {
+            interrupt();
+        }
+    }
+
+    private void endFrameWait() {
+        synchronized (mPauseLock) {
+            mWaitingForFrame = false;
+        }
+        // no interrupt is sent from now on, clear one which came after the wait returned
+        Thread.interrupted();
+    }
+
+    private void endDrawing() {
+        synchronized (mPauseLock) {
+            if (mDrawing) {
+                mDrawing = false;
+                mPauseLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits before locking the canvas again after a failure, less than the maximal backoff and
+     * no longer than the surface stays the same.
+     */
+    private void waitLockBackoff() {
+        synchronized (mPauseLock) {
+            if (mPaused || !mHasSurface || !mRunning) {
+                return;
+            }
+            try {
+                mPauseLock.wait(mLockBackoffMillis);
+            } catch (InterruptedException e) {
+                // the state is checked again by the loop
+            }
+        }
+        mLockBackoffMillis = Math.min(mLockBackoffMillis * 2, MAX_LOCK_BACKOFF_MILLIS);
+    }
+
+    private boolean waitOnRenderRequest() {
+        boolean waited = false;
         synchronized (mPauseLock) {
-            while (mPaused) {
+            while (!mRenderRequested && !mPaused && mHasSurface && mRunning) {
+                waited = true;
                 try {
                     mPauseLock.wait();
                 } catch (InterruptedException e) {
+                    // the wait condition is checked again
                 }
             }
+            mRenderRequested = false;
         }
+        return waited;
+    }
+
+    private boolean waitOnPause() {
+        boolean waited = false;
+        while (true) {
+            boolean release = false;
+            synchronized (mPauseLock) {
+                // no wakeup at all while hidden or without a surface
+                if ((!mPaused && mHasSurface) || !mRunning) {
+                    return waited;
+                }
+                if (!waited) {
+                    // the surface is no longer touched
+                    if (mPaused && mPauseRequestNanos != 0) {
+                        mFrameStats.recordHideToQuiescent(System.nanoTime() - mPauseRequestNanos);
+                        mPauseRequestNanos = 0;
+                    }
+                    release = true;
+                } else {
+                    try {
+                        mPauseLock.wait();
+                    } catch (InterruptedException e) {
+                        // the wait condition is checked again
+                    }
+                }
+                waited = true;
+            }
+            if (release) {
+                // nothing is drawn, free the memory of the scene caches, out of the lock taken
+                // by the main thread to pause and resume
+                mScene.releaseLayers();
+            }
+        }
+    }
+
+    public interface OnFrameListener {
+        public void onFrame(long frameTimeNanos);
     }
 
 }
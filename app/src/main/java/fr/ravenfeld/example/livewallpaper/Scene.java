@@ -1,86 +1,216 @@
 package fr.ravenfeld.example.livewallpaper;
 
 import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.Paint.Style;
+
+import java.util.ArrayList;
+
+import fr.ravenfeld.example.livewallpaper.scene.BackgroundLayer;
+import fr.ravenfeld.example.livewallpaper.scene.CanvasRenderTarget;
+import fr.ravenfeld.example.livewallpaper.scene.DrawStats;
+import fr.ravenfeld.example.livewallpaper.scene.Layer;
+import fr.ravenfeld.example.livewallpaper.scene.LayerSet;
+import fr.ravenfeld.example.livewallpaper.scene.OrbitLayer;
+import fr.ravenfeld.example.livewallpaper.scene.RecordingRenderTarget;
+import fr.ravenfeld.example.livewallpaper.scene.RenderTarget;
+import fr.ravenfeld.example.livewallpaper.scene.RingLayer;
+import fr.ravenfeld.example.livewallpaper.scene.SceneModel;
 
 public class Scene {
 
-    private Paint mBackgroundPaint;
-    private Paint mOuterCirclePaint;
-    private Paint mCirclePaint;
+    // the ring and the orbit follow the offset over one screen width
+    private static final float CENTER_PARALLAX = -1f;
+
+    /**
+     * Layers of the wallpaper, from back to front.
+     */
+    public static final SceneModel.LayerFactory DEFAULT_LAYERS = new SceneModel.LayerFactory() {
+        @Override
+        public void onCreateLayers(ArrayList<Layer> layers) {
+            layers.add(new BackgroundLayer(0xff8aa8a0));
+            layers.add(new RingLayer(CENTER_PARALLAX, 1f / 3, 0xff5e736d, 0xffa2bd3a));
+            layers.add(new OrbitLayer(CENTER_PARALLAX, 1f / 3, 0xffa2bd3a));
+        }
+    };
+
+    private final SceneModel mModel;
 
+    // written by the input threads, read by the render thread
+    private final SceneState mState = new SceneState();
+
+    // render thread only
+    private float mXOffset;
     private int mWidth;
-    // animation specific variables
-    private float mOuterCircleRadius;
-    private float mCircleRadius;
+    private int mHeight;
+    private LayerSet mLayerSet;
+    // animation time of the frame, applied to the shared layers when they are drawn
+    private long mAnimationTimeNanos;
+    private final CanvasRenderTarget mCanvasTarget = new CanvasRenderTarget();
+    private final DrawStats mDrawStats = new DrawStats();
+
+    private volatile boolean mAnimated = true;
+    private volatile boolean mDirty = true;
+    private volatile boolean mLayerCacheEnabled = true;
+    // set when the cache is disabled, the bitmaps are then released once by the render thread
+    private volatile boolean mReleaseCaches;
+    private OnInvalidateListener mOnInvalidateListener;
 
-    private int mCenterX;
-    private int mCenterY;
+    public Scene() {
+        this(new SceneModel(DEFAULT_LAYERS));
+    }
 
-    private int mCircleX;
-    private int mCircleY;
+    /**
+     * @param model content shared with the other scenes of the service, the scene only holds
+     *              its own size and offset
+     */
+    public Scene(SceneModel model) {
+        mModel = model;
+    }
 
-    private float mAngle;
+    public SceneModel getModel() {
+        return mModel;
+    }
 
-    public Scene() {
+    public void setOnInvalidateListener(OnInvalidateListener listener) {
+        mOnInvalidateListener = listener;
+    }
 
-        mBackgroundPaint = new Paint();
-        mBackgroundPaint.setColor(0xff8aa8a0);
+    /**
+     * @return true if something on screen changed since the last call to {@link #update(long)}
+     */
+    public boolean hasChanged() {
+        return mDirty || mAnimated;
+    }
 
-        mOuterCirclePaint = new Paint();
-        mOuterCirclePaint.setAntiAlias(true);
-        mOuterCirclePaint.setColor(0xff5e736d);
-        mOuterCirclePaint.setStyle(Style.STROKE);
-        mOuterCirclePaint.setStrokeWidth(3.0f);
+    public void invalidate() {
+        mDirty = true;
+        OnInvalidateListener listener = mOnInvalidateListener;
+        if (listener != null) {
+            listener.onInvalidate();
+        }
+    }
 
-        mCirclePaint = new Paint();
-        mCirclePaint.setAntiAlias(true);
-        mCirclePaint.setColor(0xffa2bd3a);
-        mCirclePaint.setStyle(Style.FILL);
+    public boolean isAnimated() {
+        return mAnimated;
+    }
 
+    /**
+     * @param animated false for a static scene, which is only redrawn when its size or
+     *                 offsets change
+     */
+    public void setAnimated(boolean animated) {
+        mAnimated = animated;
+        invalidate();
     }
 
-    public synchronized void updateSize(int width, int height) {
-        mWidth =width;
-        mCenterX = width / 2;
-        mCenterY = height / 2;
+    public void updateSize(int width, int height) {
+        mState.setSize(width, height);
+        invalidate();
+    }
 
-        int size = (width < height) ? width : height;
+    /**
+     * Applies the last size and offset published to the scene, on the render thread.
+     */
+    private void applyState() {
+        mWidth = mState.getWidth();
+        mHeight = mState.getHeight();
+        mXOffset = mState.getXOffset();
+
+        if (mLayerSet != null && (mLayerSet.getWidth() != mWidth || mLayerSet.getHeight() != mHeight)) {
+            mModel.release(mLayerSet);
+            mLayerSet = null;
+        }
+    }
 
-        mOuterCircleRadius = size / 3;
-        mCircleRadius = mOuterCircleRadius * 0.2f;
+    /**
+     * Enables the pre-rendering of the static layers in bitmaps, disabled to save memory
+     * at the cost of a slower draw.
+     */
+    public void setLayerCacheEnabled(boolean enabled) {
+        if (!enabled && mLayerCacheEnabled) {
+            mReleaseCaches = true;
+        }
+        mLayerCacheEnabled = enabled;
+        invalidate();
+    }
 
-        update();
+    /**
+     * Hands the layers back to the model, which releases them with their pre-rendered bitmaps
+     * if no other scene uses them. They are acquired again on the next update.
+     * Must be called on the render thread.
+     */
+    public void releaseLayers() {
+        if (mLayerSet != null) {
+            mModel.release(mLayerSet);
+            mLayerSet = null;
+        }
+    }
 
+    public void update() {
+        update(System.nanoTime());
     }
 
-    public synchronized void update() {
+    /**
+     * @param frameTimeNanos time of the frame being drawn, in the {@link System#nanoTime()} base
+     */
+    public void update(long frameTimeNanos) {
 
-        mAngle += 1.0f;
-        if (mAngle > 360f) {
-            mAngle -= 360f;
+        // cleared before reading the state, a change published from now on triggers a new frame
+        mDirty = false;
+
+        if (mState.snapshot()) {
+            applyState();
+        }
+        if (mLayerSet == null) {
+            mLayerSet = mModel.acquire(mWidth, mHeight);
         }
 
-        mCircleX = (int) (mCenterX - mOuterCircleRadius * Math.cos(Math.toRadians(mAngle)));
-        mCircleY = (int) (mCenterY - mOuterCircleRadius * Math.sin(Math.toRadians(mAngle)));
+        // the layer set may be shared: its bitmaps are released once, the draws then bypass them
+        if (mReleaseCaches) {
+            mReleaseCaches = false;
+            mLayerSet.releaseCaches();
+        }
 
+        mAnimationTimeNanos = frameTimeNanos - mModel.getAnimationStartNanos();
     }
 
-    public synchronized void draw(Canvas canvas) {
-
-        // clear the background
-        canvas.drawPaint(mBackgroundPaint);
+    public void draw(Canvas canvas) {
+        mCanvasTarget.setCanvas(canvas);
+        draw(mCanvasTarget);
+        mCanvasTarget.setCanvas(null);
+    }
 
-        // draw objects
-        canvas.drawCircle(mCenterX, mCenterY, mOuterCircleRadius, mOuterCirclePaint);
-        canvas.drawCircle(mCenterX, mCenterY, 5f, mCirclePaint);
-        canvas.drawCircle(mCircleX, mCircleY, mCircleRadius, mCirclePaint);
+    /**
+     * Draws the scene on any render target, such as a {@link RecordingRenderTarget} to draw it
+     * without a device.
+     */
+    public void draw(RenderTarget target) {
+        mDrawStats.reset();
+        if (mLayerSet == null) {
+            return;
+        }
+        // the layers are updated in the same critical section as the draw, another scene
+        // sharing them cannot update them in between
+        if (mAnimated) {
+            mLayerSet.updateAndDraw(mAnimationTimeNanos, target, mXOffset, mLayerCacheEnabled, mDrawStats);
+        } else {
+            mLayerSet.draw(target, mXOffset, mLayerCacheEnabled, mDrawStats);
+        }
+    }
 
+    /**
+     * @return the objects drawn and culled by the last draw, written by the render thread
+     */
+    public DrawStats getDrawStats() {
+        return mDrawStats;
     }
 
     public void onOffsetsChanged(float xOffset, float yOffset, float xOffsetStep, float yOffsetStep,
                                  int xPixelOffset, int yPixelOffset) {
-        mCenterX = (int) ((mWidth) * (xOffset));
+        mState.setXOffset(xOffset);
+        invalidate();
+    }
+
+    public interface OnInvalidateListener {
+        public void onInvalidate();
     }
 }
@@ -0,0 +1,104 @@
+package fr.ravenfeld.example.livewallpaper;
+
+/**
+ * Size and offset of the scene, handed from the input threads to the render thread through a
+ * sequence lock.
+ * <p/>
+ * Writers are serialized by a private lock which the render thread never takes: it copies the
+ * state with {@link #snapshot()} and retries when a write happened in the meantime, so it
+ * never blocks and never sees a torn state.
+ */
+final class SceneState {
+
+    private final Object mWriteLock = new Object();
+
+    // odd while a write is in progress
+    private volatile int mSequence = 0;
+
+    private volatile int mWidth;
+    private volatile int mHeight;
+    private volatile float mXOffset = 0.5f;
+
+    // snapshot, only accessed by the render thread
+    private int mSnapshotSequence = -1;
+    private int mSnapshotWidth;
+    private int mSnapshotHeight;
+    private float mSnapshotXOffset;
+
+    void setSize(int width, int height) {
+        synchronized (mWriteLock) {
+            mSequence++;
+            mWidth = width;
+            mHeight = height;
+            mSequence++;
+        }
+    }
+
+    void setXOffset(float xOffset) {
+        synchronized (mWriteLock) {
+            mSequence++;
+            mXOffset = xOffset;
+            mSequence++;
+        }
+    }
+
+    /**
+     * Copies the current state for the render thread.
+     *
+     * @return true if the state changed since the previous snapshot
+     */
+    boolean snapshot() {
+        int sequence;
+        int width;
+        int height;
+        float xOffset;
+        do {
+            sequence = beginRead();
+            width = mWidth;
+            height = mHeight;
+            xOffset = mXOffset;
+        } while (retryRead(sequence));
+
+        if (sequence == mSnapshotSequence) {
+            return false;
+        }
+        mSnapshotSequence = sequence;
+        mSnapshotWidth = width;
+        mSnapshotHeight = height;
+        mSnapshotXOffset = xOffset;
+        return true;
+    }
+
+    /**
+     * Starts a read section, once the write in progress if any is over.
+     *
+     * @return the sequence to check with {@link #retryRead(int)} at the end of the section
+     */
+    int beginRead() {
+        int sequence = mSequence;
+        while ((sequence & 1) != 0) {
+            sequence = mSequence;
+        }
+        return sequence;
+    }
+
+    /**
+     * @return true if a write happened during the read section, the values read must be
+     * read again
+     */
+    boolean retryRead(int sequence) {
+        return sequence != mSequence;
+    }
+
+    int getWidth() {
+        return mSnapshotWidth;
+    }
+
+    int getHeight() {
+        return mSnapshotHeight;
+    }
+
+    float getXOffset() {
+        return mSnapshotXOffset;
+    }
+}
@@ -1,84 +1,388 @@
 package fr.ravenfeld.example.livewallpaper;
 
+import android.content.BroadcastReceiver;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.os.Build;
 import android.service.wallpaper.WallpaperService;
 import android.view.MotionEvent;
 import android.view.SurfaceHolder;
+import android.view.ViewConfiguration;
+import android.view.WindowManager;
 
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+import fr.ravenfeld.example.livewallpaper.frame.ChoreographerFrameScheduler;
+import fr.ravenfeld.example.livewallpaper.frame.DeadlineFrameScheduler;
+import fr.ravenfeld.example.livewallpaper.frame.FrameRateGovernor;
+import fr.ravenfeld.example.livewallpaper.frame.FrameScheduler;
+import fr.ravenfeld.example.livewallpaper.gesture.NativeOffsetsDetector;
 import fr.ravenfeld.example.livewallpaper.gesture.OffsetsDetector;
+import fr.ravenfeld.example.livewallpaper.gesture.TouchPredictor;
+import fr.ravenfeld.example.livewallpaper.scene.DrawStats;
+import fr.ravenfeld.example.livewallpaper.scene.SceneModel;
+import fr.ravenfeld.example.livewallpaper.trace.TouchRecorder;
 
 public class Wallpaper extends WallpaperService {
 
+    public static final String SHARED_PREFS_NAME = "wallpaper_settings";
+    public static final String PREF_ORBIT_ANIMATION = "orbit_animation";
+    public static final String PREF_ACTIVE_FPS = "active_fps";
+    public static final String PREF_IDLE_FPS = "idle_fps";
+    public static final String PREF_TOUCH_PREDICTION = "touch_prediction";
+
+    private final ArrayList<WallpaperEngine> mEngines = new ArrayList<WallpaperEngine>();
+
+    // shared by the home screen and preview engines, which only hold their size and offset
+    private SceneModel mSceneModel;
+
+    private volatile boolean mPowerSave = false;
+
+    // no power save mode nor thermal status before API 21, a low battery is used instead
+    private final BroadcastReceiver mBatteryReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            mPowerSave = Intent.ACTION_BATTERY_LOW.equals(intent.getAction());
+            synchronized (mEngines) {
+                for (WallpaperEngine engine : mEngines) {
+                    engine.setPowerSave(mPowerSave);
+                }
+            }
+        }
+    };
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        mSceneModel = new SceneModel(Scene.DEFAULT_LAYERS);
+        IntentFilter filter = new IntentFilter(Intent.ACTION_BATTERY_LOW);
+        filter.addAction(Intent.ACTION_BATTERY_OKAY);
+        registerReceiver(mBatteryReceiver, filter);
+    }
+
+    @Override
+    public void onDestroy() {
+        unregisterReceiver(mBatteryReceiver);
+        super.onDestroy();
+    }
+
     @Override
     public Engine onCreateEngine() {
         return new WallpaperEngine();
     }
 
-    class WallpaperEngine extends Engine {
+    // only called from API 14, onLowMemory() is the callback of the older devices
+    @Override
+    public void onTrimMemory(int level) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            super.onTrimMemory(level);
+        }
+        trimEngines(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        trimEngines(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+
+    private void trimEngines(int level) {
+        synchronized (mEngines) {
+            for (WallpaperEngine engine : mEngines) {
+                engine.onTrimMemory(level);
+            }
+        }
+    }
+
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(fd, writer, args);
+        if (args != null && args.length == 2 && "trace".equals(args[0])) {
+            // adb shell dumpsys activity service <package>/.Wallpaper trace start|stop
+            final boolean start = "start".equals(args[1]);
+            synchronized (mEngines) {
+                for (WallpaperEngine engine : mEngines) {
+                    if (start) {
+                        engine.startTouchTrace(writer);
+                    } else {
+                        engine.stopTouchTrace(writer);
+                    }
+                }
+            }
+            return;
+        }
+        synchronized (mEngines) {
+            for (WallpaperEngine engine : mEngines) {
+                engine.dump(writer);
+            }
+        }
+    }
+
+    class WallpaperEngine extends Engine implements SharedPreferences.OnSharedPreferenceChangeListener {
 
         private static final String TAG = "WallpaperEngine";
 
         private AnimationThread mAnimationThread;
         private Scene mScene;
         private OffsetsDetector mOffsetsDetector;
-        private boolean mScrollingWorking = false;
-
-
+        private NativeOffsetsDetector mNativeOffsetsDetector;
+        // the touch events of the current gesture go to mOffsetsDetector
+        private boolean mSimulatingGesture = false;
+        private SharedPreferences mPreferences;
+        private FrameRateGovernor mFrameRateGovernor;
+        private volatile TouchRecorder mTouchRecorder;
+        private long mCreateTimeNanos;
+        private boolean mHasSurface = false;
 
         @Override
         public void onCreate(SurfaceHolder surfaceHolder) {
             super.onCreate(surfaceHolder);
+            mCreateTimeNanos = System.nanoTime();
 
-            // create the scene
-            mScene = new Scene();
+            // the scene is a light view over the shared model, the layers are created by the
+            // render thread on its first frame
+            mScene = new Scene(mSceneModel);
+            // starts loading the preferences in the background, they are read by the render thread
+            mPreferences = getSharedPreferences(SHARED_PREFS_NAME, MODE_PRIVATE);
             mOffsetsDetector = new OffsetsDetector(getBaseContext(), new
                     OffsetsDetector.OnOffsetsListener() {
                         @Override
                         public void onOffsetsChanged(float xOffset, float yOffset, float xOffsetStep, float yOffsetStep) {
+                            TouchRecorder recorder = mTouchRecorder;
+                            if (recorder != null) {
+                                recorder.onOffsetsChanged(xOffset);
+                            }
                             if (isPreview())
                                 xOffset = 0.5f;
                             mScene.onOffsetsChanged(xOffset, yOffset, xOffsetStep, yOffsetStep, 0, 0);
                         }
-                    }, false);
+                    });
+            mNativeOffsetsDetector = new NativeOffsetsDetector(
+                    ViewConfiguration.get(getBaseContext()).getScaledPagingTouchSlop(),
+                    new NativeOffsetsDetector.OnStateChangeListener() {
+                        @Override
+                        public void onStateChanged(int previousState, int state) {
+                            onOffsetsSourceChanged(previousState, state);
+                        }
+                    });
+
+            synchronized (mEngines) {
+                mEngines.add(this);
+            }
+        }
+
+        /**
+         * Creates the render thread on the first surface or visibility event, nothing is drawn
+         * before.
+         */
+        private void startRendering() {
+            if (mAnimationThread != null) {
+                return;
+            }
+            float refreshRate = getRefreshRate();
+            mFrameRateGovernor = new FrameRateGovernor(refreshRate);
+            mFrameRateGovernor.setPowerSave(mPowerSave);
+
             // start animation thread; thread starts paused
             // will run onVisibilityChanged
-            mAnimationThread = new AnimationThread(surfaceHolder, mScene);
+            mAnimationThread = new AnimationThread(getSurfaceHolder(), mScene, createFrameScheduler(refreshRate));
+            mAnimationThread.setFrameRateGovernor(mFrameRateGovernor);
+            mAnimationThread.setSurfaceAvailable(mHasSurface);
+            mAnimationThread.setStartupTask(new Runnable() {
+                @Override
+                public void run() {
+                    // blocks until the preferences are loaded, on the render thread
+                    onSharedPreferenceChanged(mPreferences, null);
+                    mPreferences.registerOnSharedPreferenceChangeListener(WallpaperEngine.this);
+                }
+            });
+            // the offsets reach the scene once per frame, a settling fling is sampled at the
+            // time of the frame being drawn
+            mAnimationThread.setOnFrameListener(new AnimationThread.OnFrameListener() {
+                @Override
+                public void onFrame(long frameTimeNanos) {
+                    // the frame is posted during this interval and shown at its end
+                    long presentationTimeNanos = frameTimeNanos
+                            + mAnimationThread.getFrameScheduler().getFrameIntervalNanos();
+                    TouchRecorder recorder = mTouchRecorder;
+                    if (recorder != null) {
+                        synchronized (recorder) {
+                            recorder.onFrame(frameTimeNanos, presentationTimeNanos);
+                            dispatchFrame(frameTimeNanos, presentationTimeNanos, recorder);
+                        }
+                    } else {
+                        dispatchFrame(frameTimeNanos, presentationTimeNanos, null);
+                    }
+                    mFrameRateGovernor.setAnimating(mOffsetsDetector.isSettling());
+                }
+            });
             mAnimationThread.start();
+        }
 
+        private void dispatchFrame(long frameTimeNanos, long presentationTimeNanos, TouchRecorder recorder) {
+            // latest offset set by the touch since the previous frame
+            mOffsetsDetector.dispatchPendingOffsets(presentationTimeNanos);
+            if (mOffsetsDetector.computeScrollOffset(frameTimeNanos)) {
+                if (recorder != null) {
+                    recorder.onOffsetsChanged(mOffsetsDetector.getOffsetXCurrent());
+                }
+                float xOffset = isPreview() ? 0.5f : mOffsetsDetector.getOffsetXCurrent();
+                mScene.onOffsetsChanged(xOffset, mOffsetsDetector.getYOffsetDefault(),
+                        mOffsetsDetector.getXOffsetStepDefault(), mOffsetsDetector.getYOffsetStepDefault(), 0, 0);
+            }
         }
 
         @Override
         public void onDestroy() {
+            synchronized (mEngines) {
+                mEngines.remove(this);
+            }
+            TouchRecorder recorder = mTouchRecorder;
+            if (recorder != null) {
+                mTouchRecorder = null;
+                recorder.close();
+            }
             mOffsetsDetector.onDestroy();
-            mAnimationThread.stopThread();
-            joinThread(mAnimationThread);
-            mAnimationThread = null;
+            if (mAnimationThread != null) {
+                mAnimationThread.stopThread();
+                joinThread(mAnimationThread);
+                mAnimationThread = null;
+            }
+            // after the render thread, which registers the listener when it starts
+            mPreferences.unregisterOnSharedPreferenceChangeListener(this);
 
             super.onDestroy();
         }
 
         @Override
         public void onVisibilityChanged(boolean visible) {
-            mOffsetsDetector.onVisibilityChanged(visible);
+            TouchRecorder recorder = mTouchRecorder;
+            if (recorder != null) {
+                synchronized (recorder) {
+                    recorder.onVisibilityChanged(visible);
+                    mOffsetsDetector.onVisibilityChanged(visible);
+                }
+            } else {
+                mOffsetsDetector.onVisibilityChanged(visible);
+            }
             if (visible) {
+                startRendering();
+                mScene.setLayerCacheEnabled(true);
                 mAnimationThread.resumeThread();
-            } else {
+            } else if (mAnimationThread != null) {
                 mAnimationThread.pauseThread();
             }
         }
 
+        @Override
+        public void onSurfaceCreated(SurfaceHolder holder) {
+            super.onSurfaceCreated(holder);
+            mHasSurface = true;
+            if (mAnimationThread != null) {
+                mAnimationThread.setSurfaceAvailable(true);
+            }
+        }
+
+        @Override
+        public void onSurfaceDestroyed(SurfaceHolder holder) {
+            mHasSurface = false;
+            if (mAnimationThread != null) {
+                // returns once the render thread no longer draws on the surface
+                mAnimationThread.setSurfaceAvailable(false);
+            }
+            super.onSurfaceDestroyed(holder);
+        }
+
         @Override
         public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
             super.onSurfaceChanged(holder, format, width, height);
-            mOffsetsDetector.setScreenWidth(width);
+            startRendering();
+            TouchRecorder recorder = mTouchRecorder;
+            if (recorder != null) {
+                synchronized (recorder) {
+                    recorder.onScreenWidthChanged(width);
+                    mOffsetsDetector.setScreenWidth(width);
+                }
+            } else {
+                mOffsetsDetector.setScreenWidth(width);
+            }
             mScene.updateSize(width, height);
 
         }
 
+        @Override
+        public void onSurfaceRedrawNeeded(SurfaceHolder holder) {
+            super.onSurfaceRedrawNeeded(holder);
+            mScene.invalidate();
+        }
+
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+            mScene.setAnimated(sharedPreferences.getBoolean(PREF_ORBIT_ANIMATION, true));
+            mFrameRateGovernor.setActiveFps(getIntPreference(sharedPreferences, PREF_ACTIVE_FPS, 0));
+            mFrameRateGovernor.setIdleFps(getIntPreference(sharedPreferences, PREF_IDLE_FPS,
+                    FrameRateGovernor.DEFAULT_IDLE_FPS));
+            if (!sharedPreferences.getBoolean(PREF_TOUCH_PREDICTION, false)) {
+                mOffsetsDetector.setTouchPredictor(null);
+            } else if (mOffsetsDetector.getTouchPredictor() == null) {
+                mOffsetsDetector.setTouchPredictor(new TouchPredictor());
+            }
+        }
+
+        // ListPreference values are stored as strings
+        private int getIntPreference(SharedPreferences sharedPreferences, String key, int defaultValue) {
+            try {
+                return Integer.parseInt(sharedPreferences.getString(key, Integer.toString(defaultValue)));
+            } catch (NumberFormatException e) {
+                return defaultValue;
+            }
+        }
+
+        void setPowerSave(boolean powerSave) {
+            // read when the governor is created otherwise
+            if (mFrameRateGovernor != null) {
+                mFrameRateGovernor.setPowerSave(powerSave);
+            }
+        }
+
         public void onTouchEvent(MotionEvent paramMotionEvent) {
             super.onTouchEvent(paramMotionEvent);
-            if (!mScrollingWorking) {
-                mOffsetsDetector.onTouchEvent(paramMotionEvent);
-            }        }
+            int action = paramMotionEvent.getAction() & MotionEvent.ACTION_MASK;
+            // the touch drives the frame rate whoever scrolls the wallpaper
+            if (mFrameRateGovernor != null) {
+                mFrameRateGovernor.setTouching(action != MotionEvent.ACTION_UP && action != MotionEvent.ACTION_CANCEL);
+            }
+            // watches the gestures in every state, to notice a launcher which stops scrolling
+            mNativeOffsetsDetector.onTouchEvent(paramMotionEvent);
+            if (action == MotionEvent.ACTION_DOWN) {
+                // a gesture is simulated from its start or not at all
+                mSimulatingGesture = !mNativeOffsetsDetector.isNative();
+            }
+            if (mSimulatingGesture) {
+                TouchRecorder recorder = mTouchRecorder;
+                if (recorder != null) {
+                    synchronized (recorder) {
+                        recorder.onTouchEvent(paramMotionEvent);
+                        mOffsetsDetector.onTouchEvent(paramMotionEvent);
+                    }
+                } else {
+                    mOffsetsDetector.onTouchEvent(paramMotionEvent);
+                }
+                if (mAnimationThread != null
+                        && (mOffsetsDetector.hasPendingOffsets() || mOffsetsDetector.isSettling())) {
+                    // the offsets are applied by the animation thread, wake it up
+                    mAnimationThread.requestRender();
+                }
+            }
+        }
 
         @Override
         public void onOffsetsChanged(float xOffset, float yOffset, float xOffsetStep, float yOffsetStep,
@@ -90,23 +394,113 @@ public class Wallpaper extends WallpaperService {
             if(xOffsetStep>0.0f){
                 mOffsetsDetector.setScreens((int)(1f/xOffsetStep));
             }
-            if(xOffset!=0.5f) {
-                mScrollingWorking = true;
+            mNativeOffsetsDetector.onOffsetsChanged(xOffset);
+            if (mNativeOffsetsDetector.isNative() && mFrameRateGovernor != null) {
+                // the launcher scrolls without telling when it stops
+                mFrameRateGovernor.onInteraction(System.nanoTime());
             }
-            if(mOffsetsDetector.getOffsetXCurrent()!=0.5f && xOffset!=mOffsetsDetector.getOffsetXCurrent()){
+            if(!mNativeOffsetsDetector.isNative() && mOffsetsDetector.getOffsetXCurrent()!=0.5f
+                    && xOffset!=mOffsetsDetector.getOffsetXCurrent()){
                 xOffset=mOffsetsDetector.getOffsetXCurrent();
             }
             mScene.onOffsetsChanged(xOffset, yOffset, xOffsetStep, yOffsetStep, xPixelOffset, yPixelOffset);
         }
+
+        private void onOffsetsSourceChanged(int previousState, int state) {
+            if (state == NativeOffsetsDetector.STATE_NATIVE) {
+                // the launcher scrolls the wallpaper: nothing is simulated from now on
+                mSimulatingGesture = false;
+                mOffsetsDetector.release();
+            } else if (previousState == NativeOffsetsDetector.STATE_NATIVE) {
+                // the simulation starts again where the launcher left the pages
+                mOffsetsDetector.setTouchOffsetX(mOffsetsDetector.getPageGeometry()
+                        .fromOffset(mNativeOffsetsDetector.getLastOffset()));
+            }
+        }
+
+        void onTrimMemory(int level) {
+            // hidden engines already released their caches when their thread was paused
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW && isVisible()) {
+                mScene.setLayerCacheEnabled(false);
+            }
+        }
+
+        void dump(PrintWriter writer) {
+            if (mAnimationThread == null) {
+                writer.println("WallpaperEngine preview=" + isPreview() + " not started");
+                return;
+            }
+            FrameScheduler scheduler = mAnimationThread.getFrameScheduler();
+            writer.println("WallpaperEngine preview=" + isPreview() + " visible=" + isVisible()
+                    + " fps=" + scheduler.getFrameRate() + " activeFps=" + mFrameRateGovernor.getActiveFps()
+                    + " idleFps=" + mFrameRateGovernor.getIdleFps() + " backoff=" + mFrameRateGovernor.getBackoffLevel()
+                    + " powerSave=" + mFrameRateGovernor.isPowerSave()
+                    + " offsets=" + NativeOffsetsDetector.stateToString(mNativeOffsetsDetector.getState()));
+            long firstFrame = mAnimationThread.getFirstFrameTimeNanos();
+            if (firstFrame != 0) {
+                writer.printf("  timeToFirstFrame=%.1fms%n", (firstFrame - mCreateTimeNanos) / 1e6);
+            }
+            mAnimationThread.getFrameStats().dump(writer, "  ");
+            DrawStats drawStats = mScene.getDrawStats();
+            writer.println("  lastFrame drawn=" + drawStats.getDrawnCount() + " culled=" + drawStats.getCulledCount());
+            TouchPredictor predictor = mOffsetsDetector.getTouchPredictor();
+            if (predictor != null) {
+                predictor.dump(writer, "  ");
+            }
+        }
+
+        /**
+         * Starts recording the touch events and the offsets of this engine in a trace, which can
+         * be replayed off device by {@link fr.ravenfeld.example.livewallpaper.trace.TouchReplayer}.
+         */
+        void startTouchTrace(PrintWriter writer) {
+            if (mTouchRecorder != null) {
+                return;
+            }
+            File file = new File(getFilesDir(), isPreview() ? "touch-preview.trace" : "touch.trace");
+            try {
+                mTouchRecorder = new TouchRecorder(new FileOutputStream(file), mOffsetsDetector);
+                writer.println("Recording touch trace to " + file);
+            } catch (IOException e) {
+                writer.println("Cannot record touch trace to " + file + ": " + e);
+            }
+        }
+
+        void stopTouchTrace(PrintWriter writer) {
+            TouchRecorder recorder = mTouchRecorder;
+            if (recorder != null) {
+                mTouchRecorder = null;
+                recorder.close();
+                writer.println("Touch trace closed, " + recorder.getRecordCount() + " records");
+            }
+        }
+
+        private float getRefreshRate() {
+            WindowManager windowManager = (WindowManager) getSystemService(Context.WINDOW_SERVICE);
+            return windowManager.getDefaultDisplay().getRefreshRate();
+        }
+
+        private FrameScheduler createFrameScheduler(float refreshRate) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                return new ChoreographerFrameScheduler(AnimationThread.DEFAULT_FPS, refreshRate);
+            }
+            return new DeadlineFrameScheduler(AnimationThread.DEFAULT_FPS);
+        }
+
         private void joinThread(Thread thread) {
-            boolean retry = true;
-            while (retry) {
+            boolean interrupted = false;
+            while (true) {
                 try {
                     thread.join();
-                    retry = false;
+                    break;
                 } catch (InterruptedException e) {
+                    // the engine must not outlive its thread, keep waiting
+                    interrupted = true;
                 }
             }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
 
     }
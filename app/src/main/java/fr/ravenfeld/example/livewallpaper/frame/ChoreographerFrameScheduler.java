@@ -0,0 +1,175 @@
+package fr.ravenfeld.example.livewallpaper.frame;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * Frame scheduler aligned on the display vsync.
+ * <p/>
+ * The render thread has no looper, so the vsync callbacks are received on a dedicated
+ * {@link HandlerThread}. Callbacks are only requested while the render thread is waiting
+ * for a frame: a paused render loop costs no vsync wakeup.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class ChoreographerFrameScheduler implements FrameScheduler, Choreographer.FrameCallback {
+
+    private static final String TAG = "ChoreographerFrameScheduler";
+
+    private final Object mLock = new Object();
+
+    private final HandlerThread mVsyncThread;
+    private final Handler mHandler;
+    private Choreographer mChoreographer;
+
+    private final long mVsyncIntervalNanos;
+
+    private volatile int mFps;
+    private volatile long mFrameIntervalNanos;
+
+    private boolean mCallbackPending = false;
+    private boolean mFrameRequested = false;
+    private int mIdleVsyncs = 0;
+    private long mVsyncCount = 0;
+    private long mLatestVsync;
+
+    private long mLastFrameTime = 0;
+    private volatile long mMissedFrames;
+
+    private final Runnable mInitRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mChoreographer = Choreographer.getInstance();
+        }
+    };
+
+    private final Runnable mPostCallbackRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mChoreographer.postFrameCallback(ChoreographerFrameScheduler.this);
+        }
+    };
+
+    private final Runnable mReleaseRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mChoreographer.removeFrameCallback(ChoreographerFrameScheduler.this);
+            Looper.myLooper().quit();
+        }
+    };
+
+    /**
+     * @param fps         target frame rate, rounded to a whole number of vsync
+     * @param refreshRate refresh rate of the display, in Hz
+     */
+    public ChoreographerFrameScheduler(int fps, float refreshRate) {
+        mVsyncIntervalNanos = (long) (1000000000L / refreshRate);
+        setFrameRate(fps);
+
+        mVsyncThread = new HandlerThread(TAG);
+        mVsyncThread.start();
+        mHandler = new Handler(mVsyncThread.getLooper());
+        mHandler.post(mInitRunnable);
+    }
+
+    @Override
+    public long awaitFrame() throws InterruptedException {
+        synchronized (mLock) {
+            // accept the vsync which is the closest to the deadline, not only the ones after it
+            final long deadline = mLastFrameTime + mFrameIntervalNanos - mVsyncIntervalNanos / 2;
+            long seenVsync = mVsyncCount;
+            while (true) {
+                requestVsyncLocked();
+                while (mVsyncCount == seenVsync) {
+                    mLock.wait();
+                }
+                seenVsync = mVsyncCount;
+                if (mLastFrameTime == 0 || mLatestVsync >= deadline) {
+                    break;
+                }
+            }
+
+            final long frameTime = mLatestVsync;
+            if (mLastFrameTime != 0) {
+                final long frames = (frameTime - mLastFrameTime + mVsyncIntervalNanos / 2) / mFrameIntervalNanos;
+                if (frames > 1) {
+                    mMissedFrames += frames - 1;
+                }
+            }
+            mLastFrameTime = frameTime;
+            return frameTime;
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        synchronized (mLock) {
+            mCallbackPending = false;
+            mLatestVsync = frameTimeNanos;
+            mVsyncCount++;
+            if (mFrameRequested) {
+                mIdleVsyncs = 0;
+            } else {
+                mIdleVsyncs++;
+            }
+            mFrameRequested = false;
+            if (mIdleVsyncs < 2) {
+                // the render thread is waiting or drawing a frame: keep the vsync flowing
+                mCallbackPending = true;
+                mChoreographer.postFrameCallback(this);
+            }
+            mLock.notifyAll();
+        }
+    }
+
+    private void requestVsyncLocked() {
+        mFrameRequested = true;
+        if (!mCallbackPending) {
+            mCallbackPending = true;
+            mHandler.post(mPostCallbackRunnable);
+        }
+    }
+
+    @Override
+    public int getFrameRate() {
+        return mFps;
+    }
+
+    @Override
+    public void setFrameRate(int fps) {
+        if (fps <= 0) {
+            throw new IllegalArgumentException("fps must be positive: " + fps);
+        }
+        long vsyncs = Math.round(1000000000.0 / fps / mVsyncIntervalNanos);
+        if (vsyncs < 1) {
+            vsyncs = 1;
+        }
+        mFps = fps;
+        mFrameIntervalNanos = vsyncs * mVsyncIntervalNanos;
+    }
+
+    @Override
+    public long getFrameIntervalNanos() {
+        return mFrameIntervalNanos;
+    }
+
+    @Override
+    public long getMissedFrames() {
+        return mMissedFrames;
+    }
+
+    @Override
+    public void reset() {
+        synchronized (mLock) {
+            mLastFrameTime = 0;
+        }
+    }
+
+    @Override
+    public void release() {
+        mHandler.post(mReleaseRunnable);
+    }
+}
@@ -0,0 +1,85 @@
+package fr.ravenfeld.example.livewallpaper.frame;
+
+/**
+ * Frame scheduler based on absolute deadlines.
+ * <p/>
+ * Deadlines are computed from the previous deadline and not from the end of the previous
+ * frame, so the pace does not drift with the drawing time.
+ */
+public class DeadlineFrameScheduler implements FrameScheduler {
+
+    private final TimeSource mTimeSource;
+
+    private volatile int mFps;
+    private volatile long mFrameIntervalNanos;
+
+    private boolean mStarted = false;
+    private long mNextDeadline;
+    private volatile long mMissedFrames;
+
+    public DeadlineFrameScheduler(int fps) {
+        this(fps, TimeSource.SYSTEM);
+    }
+
+    public DeadlineFrameScheduler(int fps, TimeSource timeSource) {
+        mTimeSource = timeSource;
+        setFrameRate(fps);
+    }
+
+    @Override
+    public long awaitFrame() throws InterruptedException {
+        long now = mTimeSource.nanoTime();
+        if (!mStarted) {
+            mStarted = true;
+            mNextDeadline = now;
+        } else if (now < mNextDeadline) {
+            mTimeSource.sleepNanos(mNextDeadline - now);
+            now = mTimeSource.nanoTime();
+        }
+
+        final long interval = mFrameIntervalNanos;
+        long frameTime = mNextDeadline;
+        final long late = now - frameTime;
+        if (late >= interval) {
+            // skip the frames we are too late for instead of drawing them in a burst
+            final long skipped = late / interval;
+            mMissedFrames += skipped;
+            frameTime += skipped * interval;
+        }
+        mNextDeadline = frameTime + interval;
+        return frameTime;
+    }
+
+    @Override
+    public int getFrameRate() {
+        return mFps;
+    }
+
+    @Override
+    public void setFrameRate(int fps) {
+        if (fps <= 0) {
+            throw new IllegalArgumentException("fps must be positive: " + fps);
+        }
+        mFps = fps;
+        mFrameIntervalNanos = 1000000000L / fps;
+    }
+
+    @Override
+    public long getFrameIntervalNanos() {
+        return mFrameIntervalNanos;
+    }
+
+    @Override
+    public long getMissedFrames() {
+        return mMissedFrames;
+    }
+
+    @Override
+    public void reset() {
+        mStarted = false;
+    }
+
+    @Override
+    public void release() {
+    }
+}
@@ -0,0 +1,137 @@
+package fr.ravenfeld.example.livewallpaper.frame;
+
+/**
+ * Chooses the frame rate of a render loop.
+ * <p/>
+ * The rate goes up to the active rate, by default the display refresh rate, while the user
+ * interacts with the wallpaper, an animation driven by a gesture runs, or for
+ * {@link #INTERACTION_WINDOW_NANOS} after an interaction without duration such as an offset
+ * sent by the launcher, and down to the idle rate otherwise. It is then divided by two each
+ * time frames keep missing their deadline and restored after a while without missed frame, and
+ * capped when the device saves power.
+ * <p/>
+ * The state can be changed from any thread, {@link #computeFrameRate(long)} is called by the
+ * render thread at every frame.
+ */
+public class FrameRateGovernor {
+
+    public static final int DEFAULT_IDLE_FPS = 20;
+    public static final int POWER_SAVE_FPS = 15;
+    public static final int MIN_FPS = 5;
+
+    /** Time the active rate is kept after {@link #onInteraction(long)}. */
+    public static final long INTERACTION_WINDOW_NANOS = 500000000L;
+
+    // consecutive frames with missed deadlines before backing off
+    private static final int MISSED_STREAK_BACKOFF = 3;
+    // consecutive frames without missed deadline before recovering one level
+    private static final int GOOD_STREAK_RECOVER = 120;
+    private static final int MAX_BACKOFF_LEVEL = 3;
+
+    private final int mRefreshRate;
+
+    private volatile int mActiveFps;
+    private volatile int mIdleFps = DEFAULT_IDLE_FPS;
+
+    private volatile boolean mTouching;
+    private volatile boolean mAnimating;
+    private volatile boolean mPowerSave;
+    // 0 until the first interaction
+    private volatile long mLastInteractionNanos;
+
+    // render thread only
+    private long mLastMissedFrames;
+    private int mMissedStreak;
+    private int mGoodStreak;
+    private int mBackoffLevel;
+
+    public FrameRateGovernor(float refreshRate) {
+        mRefreshRate = Math.max(MIN_FPS, Math.round(refreshRate));
+        mActiveFps = mRefreshRate;
+    }
+
+    /**
+     * @param fps rate while interacting, 0 for the display refresh rate
+     */
+    public void setActiveFps(int fps) {
+        mActiveFps = fps <= 0 ? mRefreshRate : Math.min(fps, mRefreshRate);
+    }
+
+    public int getActiveFps() {
+        return mActiveFps;
+    }
+
+    public void setIdleFps(int fps) {
+        mIdleFps = Math.max(MIN_FPS, Math.min(fps, mRefreshRate));
+    }
+
+    public int getIdleFps() {
+        return mIdleFps;
+    }
+
+    public void setTouching(boolean touching) {
+        mTouching = touching;
+    }
+
+    /**
+     * Reports an interaction that has no end, e.g. the launcher scrolling the wallpaper.
+     *
+     * @param timeNanos time of the interaction, in the {@link System#nanoTime()} time base
+     */
+    public void onInteraction(long timeNanos) {
+        mLastInteractionNanos = timeNanos;
+    }
+
+    public void setAnimating(boolean animating) {
+        mAnimating = animating;
+    }
+
+    public void setPowerSave(boolean powerSave) {
+        mPowerSave = powerSave;
+    }
+
+    public boolean isPowerSave() {
+        return mPowerSave;
+    }
+
+    public int getBackoffLevel() {
+        return mBackoffLevel;
+    }
+
+    /**
+     * @param missedFrames total of the frames missed by the scheduler
+     * @return the rate of the next frames
+     */
+    public int computeFrameRate(long missedFrames) {
+        return computeFrameRate(missedFrames, System.nanoTime());
+    }
+
+    /**
+     * @param nowNanos current time, in the {@link System#nanoTime()} time base
+     */
+    public int computeFrameRate(long missedFrames, long nowNanos) {
+        if (missedFrames > mLastMissedFrames) {
+            mGoodStreak = 0;
+            if (++mMissedStreak >= MISSED_STREAK_BACKOFF && mBackoffLevel < MAX_BACKOFF_LEVEL) {
+                mBackoffLevel++;
+                mMissedStreak = 0;
+            }
+        } else {
+            mMissedStreak = 0;
+            if (++mGoodStreak >= GOOD_STREAK_RECOVER && mBackoffLevel > 0) {
+                mBackoffLevel--;
+                mGoodStreak = 0;
+            }
+        }
+        mLastMissedFrames = missedFrames;
+
+        final long lastInteraction = mLastInteractionNanos;
+        final boolean interacting = lastInteraction != 0 && nowNanos - lastInteraction < INTERACTION_WINDOW_NANOS;
+        int fps = (mTouching || mAnimating || interacting) ? mActiveFps : mIdleFps;
+        fps >>= mBackoffLevel;
+        if (mPowerSave && fps > POWER_SAVE_FPS) {
+            fps = POWER_SAVE_FPS;
+        }
+        return fps < MIN_FPS ? MIN_FPS : fps;
+    }
+}
@@ -0,0 +1,37 @@
+package fr.ravenfeld.example.livewallpaper.frame;
+
+/**
+ * Paces the frames of a render loop.
+ * <p/>
+ * Frame times are expressed in the {@link System#nanoTime()} time base. A scheduler never
+ * returns several frames in a row to catch up: when the loop falls behind, the late frames
+ * are counted as missed and skipped.
+ */
+public interface FrameScheduler {
+
+    /**
+     * Blocks until the next frame is due.
+     *
+     * @return the time of the frame, in nanoseconds
+     */
+    public long awaitFrame() throws InterruptedException;
+
+    public int getFrameRate();
+
+    public void setFrameRate(int fps);
+
+    public long getFrameIntervalNanos();
+
+    /**
+     * @return the number of frames skipped because a deadline was missed
+     */
+    public long getMissedFrames();
+
+    /**
+     * Forgets the last deadline, e.g. after the render loop has been paused, so that the
+     * pause is not accounted as missed frames.
+     */
+    public void reset();
+
+    public void release();
+}
@@ -0,0 +1,133 @@
+package fr.ravenfeld.example.livewallpaper.frame;
+
+import java.io.PrintWriter;
+
+/**
+ * Timing of the phases of the frames drawn by a render loop.
+ */
+public class FrameStats {
+
+    private final LatencyHistogram mLockCanvas = new LatencyHistogram();
+    private final LatencyHistogram mUpdate = new LatencyHistogram();
+    private final LatencyHistogram mDraw = new LatencyHistogram();
+    private final LatencyHistogram mPost = new LatencyHistogram();
+    private final LatencyHistogram mFrame = new LatencyHistogram();
+    // visibility transitions, 10 us buckets up to 10 ms
+    private final LatencyHistogram mHideToQuiescent = new LatencyHistogram(10000L, 1000);
+    // 1 ms buckets up to 500 ms
+    private final LatencyHistogram mShowToFirstFrame = new LatencyHistogram(1000000L, 500);
+
+    private volatile long mFrames;
+    private volatile long mLateFrames;
+    private volatile long mDroppedFrames;
+    private volatile long mFailedLocks;
+
+    /**
+     * Records a frame from the timestamps taken between its phases, in nanoseconds.
+     *
+     * @param frameTime     time at which the frame was due
+     * @param frameInterval time between two frames, a frame posted after its end is late
+     */
+    public void recordFrame(long frameTime, long frameInterval, long lockStart, long updateStart,
+                            long drawStart, long postStart, long postEnd) {
+        mLockCanvas.record(updateStart - lockStart);
+        mUpdate.record(drawStart - updateStart);
+        mDraw.record(postStart - drawStart);
+        mPost.record(postEnd - postStart);
+        mFrame.record(postEnd - lockStart);
+        mFrames++;
+        if (postEnd - frameTime > frameInterval) {
+            mLateFrames++;
+        }
+    }
+
+    /**
+     * Records the time between a pause request and the moment the render loop stopped touching
+     * the surface.
+     */
+    public void recordHideToQuiescent(long nanos) {
+        mHideToQuiescent.record(nanos);
+    }
+
+    /**
+     * Records the time between a resume request and the post of the first frame.
+     */
+    public void recordShowToFirstFrame(long nanos) {
+        mShowToFirstFrame.record(nanos);
+    }
+
+    public LatencyHistogram getHideToQuiescent() {
+        return mHideToQuiescent;
+    }
+
+    public LatencyHistogram getShowToFirstFrame() {
+        return mShowToFirstFrame;
+    }
+
+    /**
+     * Records a lockCanvas which returned no canvas, the surface not being ready.
+     */
+    public void recordFailedLock() {
+        mFailedLocks++;
+    }
+
+    public long getFailedLocks() {
+        return mFailedLocks;
+    }
+
+    public void setDroppedFrames(long droppedFrames) {
+        mDroppedFrames = droppedFrames;
+    }
+
+    public LatencyHistogram getLockCanvas() {
+        return mLockCanvas;
+    }
+
+    public LatencyHistogram getUpdate() {
+        return mUpdate;
+    }
+
+    public LatencyHistogram getDraw() {
+        return mDraw;
+    }
+
+    public LatencyHistogram getPost() {
+        return mPost;
+    }
+
+    public LatencyHistogram getFrame() {
+        return mFrame;
+    }
+
+    public long getFrames() {
+        return mFrames;
+    }
+
+    public long getLateFrames() {
+        return mLateFrames;
+    }
+
+    public long getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    public void dump(PrintWriter writer, String prefix) {
+        writer.print(prefix);
+        writer.printf("frames=%d late=%d dropped=%d failedLocks=%d%n", mFrames, mLateFrames, mDroppedFrames,
+                mFailedLocks);
+        writer.print(prefix);
+        mLockCanvas.dump(writer, "lockCanvas");
+        writer.print(prefix);
+        mUpdate.dump(writer, "update");
+        writer.print(prefix);
+        mDraw.dump(writer, "draw");
+        writer.print(prefix);
+        mPost.dump(writer, "unlockCanvasAndPost");
+        writer.print(prefix);
+        mFrame.dump(writer, "frame");
+        writer.print(prefix);
+        mHideToQuiescent.dump(writer, "hideToQuiescent");
+        writer.print(prefix);
+        mShowToFirstFrame.dump(writer, "showToFirstFrame");
+    }
+}
@@ -0,0 +1,94 @@
+package fr.ravenfeld.example.livewallpaper.frame;
+
+import java.io.PrintWriter;
+
+/**
+ * Latency histogram with fixed buckets.
+ * <p/>
+ * Recording is allocation free and lock free. It is meant to be written by a single thread, a
+ * concurrent reader may see a few samples missing from a dump.
+ */
+public class LatencyHistogram {
+
+    public static final long DEFAULT_BUCKET_NANOS = 250000L;
+    public static final int DEFAULT_BUCKET_COUNT = 256;
+
+    private final long mBucketNanos;
+    // the last bucket counts every sample beyond the range of the histogram
+    private final long[] mCounts;
+    private long mCount;
+    private long mTotalNanos;
+    private long mMaxNanos;
+
+    public LatencyHistogram() {
+        this(DEFAULT_BUCKET_NANOS, DEFAULT_BUCKET_COUNT);
+    }
+
+    public LatencyHistogram(long bucketNanos, int bucketCount) {
+        mBucketNanos = bucketNanos;
+        mCounts = new long[bucketCount + 1];
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        long bucket = nanos / mBucketNanos;
+        if (bucket >= mCounts.length) {
+            bucket = mCounts.length - 1;
+        }
+        mCounts[(int) bucket]++;
+        mCount++;
+        mTotalNanos += nanos;
+        if (nanos > mMaxNanos) {
+            mMaxNanos = nanos;
+        }
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public long getMaxNanos() {
+        return mMaxNanos;
+    }
+
+    public long getMeanNanos() {
+        return mCount == 0 ? 0 : mTotalNanos / mCount;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket holding the given percentile, in nanoseconds
+     */
+    public long getPercentileNanos(float percentile) {
+        final long count = mCount;
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(count * percentile / 100.0);
+        long cumulated = 0;
+        for (int i = 0; i < mCounts.length - 1; i++) {
+            cumulated += mCounts[i];
+            if (cumulated >= rank) {
+                return (i + 1) * mBucketNanos;
+            }
+        }
+        return mMaxNanos;
+    }
+
+    public void reset() {
+        for (int i = 0; i < mCounts.length; i++) {
+            mCounts[i] = 0;
+        }
+        mCount = 0;
+        mTotalNanos = 0;
+        mMaxNanos = 0;
+    }
+
+    public void dump(PrintWriter writer, String name) {
+        writer.printf("%s: count=%d mean=%.2fms p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms%n",
+                name, mCount, getMeanNanos() / 1e6, getPercentileNanos(50) / 1e6,
+                getPercentileNanos(95) / 1e6, getPercentileNanos(99) / 1e6, mMaxNanos / 1e6);
+    }
+}
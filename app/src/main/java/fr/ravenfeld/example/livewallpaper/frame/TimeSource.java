@@ -0,0 +1,23 @@
+package fr.ravenfeld.example.livewallpaper.frame;
+
+/**
+ * Clock used by the frame schedulers, can be replaced by a fake one to drive them in tests.
+ */
+public interface TimeSource {
+
+    public static final TimeSource SYSTEM = new TimeSource() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void sleepNanos(long nanos) throws InterruptedException {
+            Thread.sleep(nanos / 1000000L, (int) (nanos % 1000000L));
+        }
+    };
+
+    public long nanoTime();
+
+    public void sleepNanos(long nanos) throws InterruptedException;
+}
@@ -0,0 +1,164 @@
+package fr.ravenfeld.example.livewallpaper.gesture;
+
+/**
+ * Motion of a fling ending on a page, with a closed form for any timestamp.
+ * <p/>
+ * The release velocity first decays exponentially, like {@code OverScroller}. When the
+ * remaining distance can be covered by a critically damped spring at the velocity reached, the
+ * spring takes over and brings the position onto the target without overshooting it. A fling
+ * too slow to reach the target is pulled by the spring from the start, a fling too fast is
+ * absorbed by a spring stiff enough to stop on the target.
+ * <p/>
+ * Positions are in pixels, velocities in pixels per second and times in the
+ * {@link System#nanoTime()} time base. The motion is written once by {@link #start} and then
+ * only read, so it can be sampled from another thread than the one which started it.
+ */
+public class FlingPhysics {
+
+    /** Time constant of the velocity decay, in seconds. */
+    public static final float DECAY_TIME_CONSTANT = 0.325f;
+
+    /** Angular frequency of the spring, in radians per second, stiffened for fast flings. */
+    public static final float SPRING_FREQUENCY = 12f;
+
+    // the motion is finished once this close to the target and this slow
+    private static final float REST_DISTANCE = 0.5f;
+    private static final float REST_VELOCITY = 5f;
+    // slowest handoff to the spring, a decay ending right on the target would never hand off
+    private static final float MIN_HANDOFF_VELOCITY = 50f;
+
+    private float mStartPosition;
+    private float mStartVelocity;
+    private float mTarget;
+    private long mStartTimeNanos;
+
+    // decay phase, lasting mDecayDuration seconds
+    private float mDecayDuration;
+
+    // spring phase: position - target = (mSpringA + mSpringB * t) * exp(-mSpringFrequency * t)
+    private float mSpringFrequency;
+    private float mSpringA;
+    private float mSpringB;
+
+    private volatile boolean mRunning = false;
+
+    /**
+     * @return the distance a fling at the given velocity covers with the velocity decay alone
+     */
+    public static float getDecayDistance(float velocity) {
+        return velocity * DECAY_TIME_CONSTANT;
+    }
+
+    public void start(float position, float velocity, float target, long startTimeNanos) {
+        mStartPosition = position;
+        mStartVelocity = velocity;
+        mTarget = target;
+        mStartTimeNanos = startTimeNanos;
+
+        final float distance = target - position;
+        float frequency = SPRING_FREQUENCY;
+        mDecayDuration = 0;
+        if (distance * velocity > 0) {
+            final float ratio = velocity / distance;
+            final float decayDistance = getDecayDistance(velocity);
+            if (ratio >= SPRING_FREQUENCY) {
+                // a critically damped spring does not overshoot while v0 <= frequency * x0
+                frequency = ratio;
+            } else if (Math.abs(decayDistance) >= Math.abs(distance)) {
+                // coast until v = frequency * remaining distance, where the spring takes over
+                // with no velocity jump, before the decay alone would pass the target; handing
+                // off earlier at a faster velocity still leaves more than v / frequency to go
+                final float handoffVelocity = Math.max(MIN_HANDOFF_VELOCITY, Math.abs(SPRING_FREQUENCY
+                        * (decayDistance - distance) / (SPRING_FREQUENCY * DECAY_TIME_CONSTANT - 1)));
+                mDecayDuration = Math.max(0f,
+                        (float) (DECAY_TIME_CONSTANT * Math.log(Math.abs(velocity) / handoffVelocity)));
+            }
+        }
+
+        final float springPosition = decayPosition(mDecayDuration) - target;
+        final float springVelocity = decayVelocity(mDecayDuration);
+        mSpringFrequency = frequency;
+        mSpringA = springPosition;
+        mSpringB = springVelocity + frequency * springPosition;
+
+        mRunning = true;
+    }
+
+    /**
+     * Stops the motion where it is, {@link #isRunning()} returns false from now on.
+     */
+    public void abort() {
+        mRunning = false;
+    }
+
+    /**
+     * @return true until the motion is aborted or reported finished by {@link #isFinished(long)}
+     */
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    public float getTarget() {
+        return mTarget;
+    }
+
+    public long getStartTime() {
+        return mStartTimeNanos;
+    }
+
+    /**
+     * @return the time the velocity decays before the spring takes over, in seconds
+     */
+    public float getDecayDuration() {
+        return mDecayDuration;
+    }
+
+    public float getPosition(long timeNanos) {
+        final float t = elapsedSeconds(timeNanos);
+        if (t < mDecayDuration) {
+            return decayPosition(t);
+        }
+        final float s = t - mDecayDuration;
+        return mTarget + (mSpringA + mSpringB * s) * (float) Math.exp(-mSpringFrequency * s);
+    }
+
+    public float getVelocity(long timeNanos) {
+        final float t = elapsedSeconds(timeNanos);
+        if (t < mDecayDuration) {
+            return decayVelocity(t);
+        }
+        final float s = t - mDecayDuration;
+        return (mSpringB - mSpringFrequency * (mSpringA + mSpringB * s)) * (float) Math.exp(-mSpringFrequency * s);
+    }
+
+    /**
+     * @return true if the motion is at rest on its target at the given time, the motion is no
+     * longer running afterwards
+     */
+    public boolean isFinished(long timeNanos) {
+        if (!mRunning) {
+            return true;
+        }
+        if (elapsedSeconds(timeNanos) >= mDecayDuration
+                && Math.abs(getPosition(timeNanos) - mTarget) < REST_DISTANCE
+                && Math.abs(getVelocity(timeNanos)) < REST_VELOCITY) {
+            mRunning = false;
+            return true;
+        }
+        return false;
+    }
+
+    private float elapsedSeconds(long timeNanos) {
+        final long elapsed = timeNanos - mStartTimeNanos;
+        // a vsync timestamp can precede the start of a fling started during the frame
+        return elapsed <= 0 ? 0 : elapsed / 1000000000f;
+    }
+
+    private float decayPosition(float t) {
+        return mStartPosition + getDecayDistance(mStartVelocity) * (1 - (float) Math.exp(-t / DECAY_TIME_CONSTANT));
+    }
+
+    private float decayVelocity(float t) {
+        return mStartVelocity * (float) Math.exp(-t / DECAY_TIME_CONSTANT);
+    }
+}
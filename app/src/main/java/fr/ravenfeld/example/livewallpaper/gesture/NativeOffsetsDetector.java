@@ -0,0 +1,144 @@
+package fr.ravenfeld.example.livewallpaper.gesture;
+
+import android.view.MotionEvent;
+
+/**
+ * Tells whether the launcher scrolls the wallpaper itself, or whether the offsets have to be
+ * simulated from the touch events by an {@link OffsetsDetector}.
+ * <p/>
+ * The launcher is trusted once it sent {@link #NATIVE_CONFIRMATIONS} different offsets in a row,
+ * other than the centered 0.5 sent by the launchers which do not scroll. It is given up after
+ * {@link #SIMULATED_CONFIRMATIONS} drags in a row during which it sent no offset. A drag towards
+ * the bound the latest offset is at moves nothing and is not counted. Each transition needs
+ * its own evidence, a state is never left on a single event.
+ * <p/>
+ * While the offsets are native, the touch events are only watched for the drags without
+ * offset, with a few comparisons per event, so that a change of launcher brings the simulation
+ * back. All the calls are made from the main thread of the engine.
+ */
+public class NativeOffsetsDetector {
+
+    /** Nothing proven yet, the offsets are simulated meanwhile. */
+    public static final int STATE_UNKNOWN = 0;
+    /** The launcher sends the offsets, the touch events are not simulated. */
+    public static final int STATE_NATIVE = 1;
+    /** The launcher sends no offset, they are simulated from the touch events. */
+    public static final int STATE_SIMULATED = 2;
+
+    public static final int NATIVE_CONFIRMATIONS = 2;
+    public static final int SIMULATED_CONFIRMATIONS = 3;
+
+    // offset sent by the launchers which do not scroll the wallpaper
+    private static final float CENTERED_OFFSET = 0.5f;
+    // distance to the first or last offset under which the pages are against the bound
+    private static final float BOUND_TOLERANCE = 0.001f;
+
+    private final OnStateChangeListener mListener;
+    private final float mDragDistance;
+
+    private int mState = STATE_UNKNOWN;
+    // evidence gathered since the last transition, reset by the opposite evidence
+    private int mNativeOffsets;
+    private int mMissedDrags;
+
+    private float mLastOffset = CENTERED_OFFSET;
+    private boolean mOffsetChangedInGesture;
+    private float mDownX;
+
+    /**
+     * @param dragDistance horizontal distance from which a gesture is a drag the launcher
+     *                     should follow, in pixels
+     */
+    public NativeOffsetsDetector(float dragDistance, OnStateChangeListener listener) {
+        if (listener == null) {
+            throw new NullPointerException("OnStateChangeListener must not be null");
+        }
+        mDragDistance = dragDistance;
+        mListener = listener;
+    }
+
+    public int getState() {
+        return mState;
+    }
+
+    public boolean isNative() {
+        return mState == STATE_NATIVE;
+    }
+
+    /**
+     * @return the latest offset sent by the launcher
+     */
+    public float getLastOffset() {
+        return mLastOffset;
+    }
+
+    /**
+     * Called with each offset sent by the launcher.
+     */
+    public void onOffsetsChanged(float xOffset) {
+        if (xOffset == mLastOffset || xOffset == CENTERED_OFFSET) {
+            mLastOffset = xOffset;
+            return;
+        }
+        mLastOffset = xOffset;
+        mOffsetChangedInGesture = true;
+        mMissedDrags = 0;
+        if (mState != STATE_NATIVE && ++mNativeOffsets >= NATIVE_CONFIRMATIONS) {
+            setState(STATE_NATIVE);
+        }
+    }
+
+    /**
+     * Called with each touch event of the wallpaper, in any state.
+     */
+    public void onTouchEvent(MotionEvent event) {
+        switch (event.getAction() & MotionEvent.ACTION_MASK) {
+            case MotionEvent.ACTION_DOWN:
+                mDownX = event.getX();
+                mOffsetChangedInGesture = false;
+                break;
+            case MotionEvent.ACTION_UP:
+                final float dx = event.getX() - mDownX;
+                if (Math.abs(dx) < mDragDistance || mOffsetChangedInGesture || isAgainstBound(dx)) {
+                    break;
+                }
+                mNativeOffsets = 0;
+                if (mState != STATE_SIMULATED && ++mMissedDrags >= SIMULATED_CONFIRMATIONS) {
+                    setState(STATE_SIMULATED);
+                }
+                break;
+        }
+    }
+
+    /**
+     * @return true if the launcher already shows the page a drag of the given direction leads
+     * to, and rightly sends no offset
+     */
+    private boolean isAgainstBound(float dx) {
+        // the pages follow the finger: a drag to the right goes towards the first page
+        return dx > 0 ? mLastOffset <= BOUND_TOLERANCE : mLastOffset >= 1 - BOUND_TOLERANCE;
+    }
+
+    public static String stateToString(int state) {
+        switch (state) {
+            case STATE_NATIVE:
+                return "native";
+            case STATE_SIMULATED:
+                return "simulated";
+            default:
+                return "unknown";
+        }
+    }
+
+    private void setState(int state) {
+        final int previous = mState;
+        mState = state;
+        mNativeOffsets = 0;
+        mMissedDrags = 0;
+        mListener.onStateChanged(previous, state);
+    }
+
+    public interface OnStateChangeListener {
+        public void onStateChanged(int previousState, int state);
+    }
+}
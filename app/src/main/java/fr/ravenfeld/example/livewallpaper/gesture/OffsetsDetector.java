@@ -1,17 +1,15 @@
 package fr.ravenfeld.example.livewallpaper.gesture;
 
 import android.content.Context;
-import android.util.Log;
 import android.view.MotionEvent;
 import android.view.VelocityTracker;
 import android.view.ViewConfiguration;
 
 public class OffsetsDetector {
 
-    private static final String TAG = "OffsetsDetector";
     private final OnOffsetsListener mListener;
-    Animate mSwipeAnim = null;
-    private GestureThread mGestureThread;
+    // sampled by the render loop, guarded by itself against the touch thread
+    private final FlingPhysics mFling = new FlingPhysics();
     private int mMaximumFlingVelocity;
     private VelocityTracker mVelocityTracker;
     private boolean mAlwaysInTapRegion;
@@ -20,22 +18,28 @@ public class OffsetsDetector {
     private float mLastFocusY;
     private float mDownFocusX;
     private float mDownFocusY;
-    private float mTotalTouchOffsetX = -1.0F;
+    // written by the touch thread and by the render loop while the fling settles
+    private volatile float mTotalTouchOffsetX = -1.0F;
+    // page boundary the current gesture started from
+    private float mGestureStartPosition;
+    // set by the moves, the listener is notified once per frame by dispatchPendingOffsets()
+    private volatile boolean mOffsetsPending = false;
+    // true from the end of the touch slop to the release of the finger
+    private volatile boolean mDragging = false;
+    // null when the offsets are not predicted
+    private volatile TouchPredictor mPredictor;
     private float xOffsetDefault = 0.5f;
     private float yOffsetDefault = 0.5f;
     private float yOffsetStepDefault = 1f;
     private int nbScreen = 4;
     private float xOffsetStepDefault = 1f / nbScreen;
     private int mScreenWidth;
-    private boolean mManualThread;
+    // immutable, replaced on the main thread when the screen count or width changes, never on
+    // the touch path, and read by the render loop
+    private volatile PageGeometry mPageGeometry = new PageGeometry(nbScreen, 0, 0f, PageGeometry.DEFAULT_RUBBER_BAND);
 
     public OffsetsDetector(Context context, OnOffsetsListener listener) {
-        this(context, listener, false);
-    }
-
-    public OffsetsDetector(Context context, OnOffsetsListener listener, boolean manualThread) {
         mListener = listener;
-        mManualThread = manualThread;
         init(context);
     }
 
@@ -53,10 +57,6 @@ public class OffsetsDetector {
             touchSlop = configuration.getScaledTouchSlop();
             mMaximumFlingVelocity = configuration.getScaledMaximumFlingVelocity();
         }
-        if (!mManualThread) {
-            mGestureThread = new GestureThread();
-            mGestureThread.start();
-        }
         mTouchSlopSquare = touchSlop * touchSlop;
     }
 
@@ -64,13 +64,112 @@ public class OffsetsDetector {
         return getViewOffset();
     }
 
-    public Animate getSwipeAnimation() {
-        return mSwipeAnim;
+    /**
+     * @return the position of the pages under the finger, in pixels, before the rubber band
+     */
+    public float getTouchOffsetX() {
+        return mTotalTouchOffsetX;
+    }
+
+    public void setTouchOffsetX(float touchOffsetX) {
+        mTotalTouchOffsetX = touchOffsetX;
+    }
+
+    /**
+     * @return true if the touch moved the offset since the last {@link #dispatchPendingOffsets()}
+     */
+    public boolean hasPendingOffsets() {
+        return mOffsetsPending;
+    }
+
+    /**
+     * Extrapolates the offsets of a drag to the time they are shown, see
+     * {@link #dispatchPendingOffsets(long)}.
+     *
+     * @param predictor null to dispatch the latest touch position
+     */
+    public void setTouchPredictor(TouchPredictor predictor) {
+        mPredictor = predictor;
+    }
+
+    public TouchPredictor getTouchPredictor() {
+        return mPredictor;
+    }
+
+    /**
+     * Notifies the listener of the latest offset set by the touch events, if any. Called once
+     * per frame, so that a touch panel reporting faster than the display does not update the
+     * offset several times per frame.
+     *
+     * @return true if the listener was notified
+     */
+    public boolean dispatchPendingOffsets() {
+        if (!mOffsetsPending) {
+            return false;
+        }
+        // cleared before reading the offset, a later move is dispatched on the next frame
+        mOffsetsPending = false;
+        mListener.onOffsetsChanged(getViewOffset(), yOffsetDefault, xOffsetStepDefault, yOffsetStepDefault);
+        return true;
+    }
+
+    /**
+     * Same as {@link #dispatchPendingOffsets()}, with the offset of a drag predicted at the
+     * given time when a {@link TouchPredictor} is set.
+     *
+     * @param presentationTimeNanos time the frame being drawn is expected on screen, in the
+     *                              {@link System#nanoTime()} time base
+     */
+    public boolean dispatchPendingOffsets(long presentationTimeNanos) {
+        final TouchPredictor predictor = mPredictor;
+        if (predictor == null) {
+            return dispatchPendingOffsets();
+        }
+        // a predicted offset is replaced even when the finger stopped
+        if (!mOffsetsPending && !predictor.isPredicting()) {
+            return false;
+        }
+        mOffsetsPending = false;
+        final PageGeometry geometry = mPageGeometry;
+        float position = mTotalTouchOffsetX;
+        if (mDragging) {
+            position = predictor.predict(position, presentationTimeNanos, geometry);
+        } else {
+            // the drag ended while this frame started
+            predictor.reset();
+        }
+        mListener.onOffsetsChanged(geometry.toOffset(geometry.rubberBand(position)), yOffsetDefault,
+                xOffsetStepDefault, yOffsetStepDefault);
+        return true;
+    }
+
+    /**
+     * @return true while a fling is settling onto a page, the owner must then call
+     * {@link #computeScrollOffset(long)} at each frame
+     */
+    public boolean isSettling() {
+        return mFling.isRunning();
     }
 
-    public void swipeAnimationUpdate() {
-        if (mSwipeAnim != null)
-            mSwipeAnim.update();
+    /**
+     * Moves the offset to its position in the settling fling, without notifying the listener:
+     * the owner reads the new offset with {@link #getOffsetXCurrent()}.
+     *
+     * @param frameTimeNanos time of the frame being drawn, in the {@link System#nanoTime()} base
+     * @return true if the offset moved, false when no fling is settling
+     */
+    public boolean computeScrollOffset(long frameTimeNanos) {
+        synchronized (mFling) {
+            if (!mFling.isRunning()) {
+                return false;
+            }
+            if (mFling.isFinished(frameTimeNanos)) {
+                mTotalTouchOffsetX = mFling.getTarget();
+            } else {
+                mTotalTouchOffsetX = mFling.getPosition(frameTimeNanos);
+            }
+            return true;
+        }
     }
 
     public float getXOffsetDefault() {
@@ -111,6 +210,7 @@ public class OffsetsDetector {
 
     public void setScreenWidth(int width) {
         this.mScreenWidth = width;
+        mPageGeometry = mPageGeometry.withPageWidth(width);
         if (mTotalTouchOffsetX == -1)
             mTotalTouchOffsetX = width * nbScreen / 2f;
         mListener.onOffsetsChanged(xOffsetDefault, yOffsetDefault, xOffsetStepDefault, yOffsetStepDefault);
@@ -124,15 +224,36 @@ public class OffsetsDetector {
     public void setScreens(int nbScreen) {
         this.nbScreen = nbScreen;
         xOffsetStepDefault = 1f / this.nbScreen;
+        if (nbScreen != mPageGeometry.getPageCount()) {
+            mPageGeometry = mPageGeometry.withPageCount(nbScreen);
+        }
+    }
+
+    public PageGeometry getPageGeometry() {
+        return mPageGeometry;
+    }
+
+    /**
+     * @param overscroll maximal distance the pages can be dragged beyond the first and last
+     *                   page, in pixels, 0 to stop at the bounds
+     * @param rubberBand resistance of the overscroll, see {@link PageGeometry}
+     */
+    public void setOverscroll(float overscroll, float rubberBand) {
+        mPageGeometry = mPageGeometry.withOverscroll(overscroll, rubberBand);
     }
 
     public void onVisibilityChanged(boolean visible) {
-        if (!mManualThread) {
-            if (visible) {
-                mGestureThread.resumeThread();
-            } else {
-                mGestureThread.pauseThread();
+        if (!visible) {
+            // nothing samples the fling nor dispatches the offsets while hidden, land on the
+            // page right away
+            synchronized (mFling) {
+                if (mFling.isRunning()) {
+                    mFling.abort();
+                    mTotalTouchOffsetX = mFling.getTarget();
+                    mOffsetsPending = true;
+                }
             }
+            dispatchPendingOffsets();
         }
     }
 
@@ -142,6 +263,9 @@ public class OffsetsDetector {
         if (mVelocityTracker == null) {
             mVelocityTracker = VelocityTracker.obtain();
         }
+        if ((action & MotionEvent.ACTION_MASK) == MotionEvent.ACTION_DOWN) {
+            mVelocityTracker.clear();
+        }
         mVelocityTracker.addMovement(event);
 
         final float focusX = event.getX(0);
@@ -163,50 +287,53 @@ public class OffsetsDetector {
                 break;
             case MotionEvent.ACTION_DOWN:
 
+                // catch the page where the fling brought it
+                synchronized (mFling) {
+                    if (mFling.isRunning()) {
+                        mTotalTouchOffsetX = mFling.getPosition(getEventTimeNanos(event));
+                        mFling.abort();
+                    }
+                }
+                mGestureStartPosition = mPageGeometry.nearestPagePosition(mTotalTouchOffsetX);
+                endDrag();
                 mDownFocusX = mLastFocusX = focusX;
                 mDownFocusY = mLastFocusY = focusY;
                 mAlwaysInTapRegion = true;
 
                 break;
             case MotionEvent.ACTION_MOVE:
-                final float scrollX = mLastFocusX - focusX;
-                final float scrollY = mLastFocusY - focusY;
-                if (mAlwaysInTapRegion) {
-                    final int deltaX = (int) (focusX - mDownFocusX);
-                    final int deltaY = (int) (focusY - mDownFocusY);
-                    int distance = (deltaX * deltaX) + (deltaY * deltaY);
-                    if (distance > mTouchSlopSquare) {
-
-                        mLastFocusX = focusX;
-                        mLastFocusY = focusY;
-                        mAlwaysInTapRegion = false;
-                        mTotalTouchOffsetX += scrollX;
-                        mListener.onOffsetsChanged(getViewOffset(), yOffsetDefault, xOffsetStepDefault, yOffsetStepDefault);
+                // samples batched since the previous event, oldest first
+                final TouchPredictor predictor = mPredictor;
+                final int historySize = event.getHistorySize();
+                for (int h = 0; h < historySize; h++) {
+                    onMove(event.getHistoricalX(0, h), event.getHistoricalY(0, h));
+                    if (predictor != null && mDragging) {
+                        predictor.addSample(mTotalTouchOffsetX, event.getHistoricalEventTime(h) * 1000000L);
                     }
-
-                } else if ((Math.abs(scrollX) >= 1) || (Math.abs(scrollY) >= 1)) {
-
-                    mTotalTouchOffsetX += scrollX;
-                    mListener.onOffsetsChanged(getViewOffset(), yOffsetDefault, xOffsetStepDefault, yOffsetStepDefault);
-                    mLastFocusX = focusX;
-                    mLastFocusY = focusY;
+                }
+                onMove(focusX, focusY);
+                if (predictor != null && mDragging) {
+                    final long eventTimeNanos = getEventTimeNanos(event);
+                    predictor.addSample(mTotalTouchOffsetX, eventTimeNanos);
+                    mVelocityTracker.computeCurrentVelocity(1000, mMaximumFlingVelocity);
+                    // the pages move against the finger
+                    predictor.setVelocity(-mVelocityTracker.getXVelocity(event.getPointerId(0)), eventTimeNanos);
                 }
                 break;
 
             case (MotionEvent.ACTION_UP):
 
+                endDrag();
                 if (!mAlwaysInTapRegion) {
                     final VelocityTracker velocityTracker = mVelocityTracker;
                     final int pointerId = event.getPointerId(0);
                     velocityTracker.computeCurrentVelocity(1000, mMaximumFlingVelocity);
                     final float velocityX = velocityTracker.getXVelocity(pointerId);
-                    onFling(mDownFocusX, event.getX(), velocityX);
+                    onFling(velocityX, getEventTimeNanos(event));
                 }
 
-                if (mVelocityTracker != null) {
-                    mVelocityTracker.recycle();
-                    mVelocityTracker = null;
-                }
+                // the tracker is kept for the next gesture and cleared on ACTION_DOWN
+                mVelocityTracker.clear();
 
                 break;
             case MotionEvent.ACTION_CANCEL:
@@ -216,200 +343,114 @@ public class OffsetsDetector {
         }
     }
 
-    private void cancel() {
-        mVelocityTracker.recycle();
-        mVelocityTracker = null;
-        mAlwaysInTapRegion = false;
-    }
-
-    private float getViewOffset() {
-        if (mTotalTouchOffsetX < 0.0F)
-            mTotalTouchOffsetX = 0.0F;
-        if (mTotalTouchOffsetX > mScreenWidth * nbScreen)
-            mTotalTouchOffsetX = mScreenWidth * nbScreen;
-        return mTotalTouchOffsetX / (float) (mScreenWidth * nbScreen);
-    }
-
-    public void onFling(float scrollDownX, Float scrollUpX, float velocityX) {
-
-        if ((scrollDownX - scrollUpX > 25.0F) && (Math.abs(velocityX) > 500.0F)) {
-            animationRightScreen();
-        } else if ((scrollDownX - scrollUpX > mScreenWidth * 0.4f)) {
-            animationRightScreen();
-
-        } else if ((scrollDownX - scrollUpX > 0.0F)) {
-            animationLeftScreen();
-        } else if ((scrollUpX - scrollDownX > 25.0F) && (Math.abs(velocityX) > 500.0F) && (mTotalTouchOffsetX > 0.0F)) {
+    private void onMove(float focusX, float focusY) {
+        final float scrollX = mLastFocusX - focusX;
+        final float scrollY = mLastFocusY - focusY;
+        if (mAlwaysInTapRegion) {
+            final int deltaX = (int) (focusX - mDownFocusX);
+            final int deltaY = (int) (focusY - mDownFocusY);
+            int distance = (deltaX * deltaX) + (deltaY * deltaY);
+            if (distance > mTouchSlopSquare) {
+
+                mLastFocusX = focusX;
+                mLastFocusY = focusY;
+                mAlwaysInTapRegion = false;
+                mDragging = true;
+                mTotalTouchOffsetX = mPageGeometry.clampTouch(mTotalTouchOffsetX + scrollX);
+                mOffsetsPending = true;
+            }
 
-            animationLeftScreen();
-        } else if ((scrollUpX - scrollDownX > mScreenWidth * 0.4f)) {
-            animationLeftScreen();
-        } else if ((scrollUpX - scrollDownX > 0.0F)) {
-            animationRightScreen();
+        } else if ((Math.abs(scrollX) >= 1) || (Math.abs(scrollY) >= 1)) {
 
+            mTotalTouchOffsetX = mPageGeometry.clampTouch(mTotalTouchOffsetX + scrollX);
+            mOffsetsPending = true;
+            mLastFocusX = focusX;
+            mLastFocusY = focusY;
         }
     }
 
-    private float nextScreen(float mTotalTouchOffsetX) {
-        int nb = nbScreen;
-        while (nb >= 0) {
-            if (mTotalTouchOffsetX <= mScreenWidth * nb && mTotalTouchOffsetX > mScreenWidth * (nb - 1)) {
-                break;
-            }
-            nb--;
-        }
-        return mScreenWidth * (nb);
+    private void cancel() {
+        mVelocityTracker.clear();
+        mAlwaysInTapRegion = false;
+        endDrag();
     }
 
-    private float beforeScreen(float mTotalTouchOffsetX) {
-        int nb = nbScreen;
-        while (nb >= 0) {
-            if (mTotalTouchOffsetX <= mScreenWidth * nb && mTotalTouchOffsetX > mScreenWidth * (nb - 1)) {
-                break;
+    private void endDrag() {
+        mDragging = false;
+        final TouchPredictor predictor = mPredictor;
+        if (predictor != null) {
+            if (predictor.isPredicting()) {
+                // the next frame shows the touch position again
+                mOffsetsPending = true;
             }
-            nb--;
+            predictor.reset();
         }
-        return mScreenWidth * (nb - 1);
     }
 
-    private void animationRightScreen() {
-        if (mTotalTouchOffsetX < mScreenWidth * nbScreen) {
-
-            if (mSwipeAnim != null) {
-                mSwipeAnim.destroyAnimation();
-            }
-            mSwipeAnim = new Animate(mTotalTouchOffsetX, nextScreen(mTotalTouchOffsetX));
-            mSwipeAnim.setAnimationListener(new AnimateListener() {
-                public void AnimationEnded(Animate paramAnonymousAnimate) {
-
-                }
-
-                public void AnimationStarted(Animate paramAnonymousAnimate) {
-                }
-
-                public void AnimationUpdated(Animate paramAnonymousAnimate) {
-                    mTotalTouchOffsetX = paramAnonymousAnimate.getCurrentValue();
-                    mListener.onOffsetsChanged(getViewOffset(), yOffsetDefault, xOffsetStepDefault, yOffsetStepDefault);
-                }
-            });
-            mSwipeAnim.startAnimation();
-        }
+    private float getViewOffset() {
+        final PageGeometry geometry = mPageGeometry;
+        return geometry.toOffset(geometry.rubberBand(mTotalTouchOffsetX));
     }
 
-    private void animationLeftScreen() {
-
-        if (mTotalTouchOffsetX > 0) {
-            if (mSwipeAnim != null) {
-                mSwipeAnim.destroyAnimation();
-            }
-            mSwipeAnim = new Animate(mTotalTouchOffsetX, beforeScreen(mTotalTouchOffsetX));
-            mSwipeAnim.setAnimationListener(new AnimateListener() {
-                public void AnimationEnded(Animate paramAnonymousAnimate) {
-                }
-
-                public void AnimationStarted(Animate paramAnonymousAnimate) {
-                }
-
-                public void AnimationUpdated(Animate paramAnonymousAnimate) {
-                    mTotalTouchOffsetX = paramAnonymousAnimate.getCurrentValue();
-                    mListener.onOffsetsChanged(getViewOffset(), yOffsetDefault, xOffsetStepDefault, yOffsetStepDefault);
-                }
-            });
-            mSwipeAnim.startAnimation();
-        }
+    /**
+     * Settles the pages after a drag, on the page where the velocity decay would bring them,
+     * at most one page away from the page the gesture started from.
+     *
+     * @param velocityX velocity of the finger, in pixels per second
+     */
+    public void onFling(float velocityX) {
+        onFling(velocityX, System.nanoTime());
     }
 
-    public void onDestroy() {
-        if (!mManualThread) {
-            mGestureThread.stopThread();
-            joinThread(mGestureThread);
-            mGestureThread = null;
+    /**
+     * @param timeNanos time of the release, in the {@link System#nanoTime()} time base
+     */
+    public void onFling(float velocityX, long timeNanos) {
+        final PageGeometry geometry = mPageGeometry;
+        final float position = mTotalTouchOffsetX;
+        // the pages move against the finger
+        final float velocity = -velocityX;
+
+        final float target;
+        if (!geometry.isInBounds(position)) {
+            // released in the overscroll, go back to the first or last page
+            target = geometry.clamp(position);
+        } else {
+            final float pageWidth = geometry.getPageWidth();
+            final float landing = geometry.nearestPagePosition(position + FlingPhysics.getDecayDistance(velocity));
+            target = Math.max(mGestureStartPosition - pageWidth, Math.min(mGestureStartPosition + pageWidth, landing));
         }
-    }
-
-    private void joinThread(Thread thread) {
-        boolean retry = true;
-        while (retry) {
-            try {
-                thread.join();
-                retry = false;
-            } catch (InterruptedException e) {
-            }
+        synchronized (mFling) {
+            mFling.start(position, velocity, target, timeNanos);
         }
-
     }
 
-    public interface OnOffsetsListener {
-        public void onOffsetsChanged(float xOffset, float yOffset, float xOffsetStep, float yOffsetStep);
+    // the uptimeMillis() time of the events and System.nanoTime() both read the monotonic clock
+    private static long getEventTimeNanos(MotionEvent event) {
+        return event.getEventTime() * 1000000L;
     }
 
-    class GestureThread extends Thread {
-        private Object pauseLock = new Object();
-
-        private boolean running = true;
-        private boolean paused = true;
-
-        private int fps = 30;
-        private int timeFrame = 1000 / fps; // drawing time frame in miliseconds 1000 ms / fps
-
-        @Override
-        public void run() {
-
-            while (running) {
-
-                waitOnPause();
-
-                if (!running) {
-                    return;
-                }
-                long beforeDrawTime = System.currentTimeMillis();
-                swipeAnimationUpdate();
-                long afterDrawTime = System.currentTimeMillis() - beforeDrawTime;
-                try {
-                    if (timeFrame > afterDrawTime) {
-                        Thread.sleep(timeFrame - afterDrawTime);
-                    }
-                } catch (InterruptedException ex) {
-                    Log.e(TAG, "Exception during Thread.sleep().", ex);
-                }
-
-            }
-
+    /**
+     * Stops the drag and the fling and frees the velocity tracker, when the offsets no longer
+     * come from the touch events. The next event obtains a new tracker.
+     */
+    public void release() {
+        endDrag();
+        if (mVelocityTracker != null) {
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
         }
-
-        public void stopThread() {
-            synchronized (pauseLock) {
-                paused = false;
-                running = false;
-                pauseLock.notifyAll();
-            }
-            Log.d(TAG, "Stopped thread (" + this.getId() + ")");
-        }
-
-        public void pauseThread() {
-            synchronized (pauseLock) {
-                paused = true;
-            }
-            Log.d(TAG, "Paused thread (" + this.getId() + ")");
+        synchronized (mFling) {
+            mFling.abort();
         }
+        mOffsetsPending = false;
+    }
 
-        public void resumeThread() {
-            synchronized (pauseLock) {
-                paused = false;
-                pauseLock.notifyAll();
-            }
-            Log.d(TAG, "Resumed thread (" + this.getId() + ")");
-        }
+    public void onDestroy() {
+        release();
+    }
 
-        private void waitOnPause() {
-            synchronized (pauseLock) {
-                while (paused) {
-                    try {
-                        pauseLock.wait();
-                    } catch (InterruptedException e) {
-                    }
-                }
-            }
-        }
+    public interface OnOffsetsListener {
+        public void onOffsetsChanged(float xOffset, float yOffset, float xOffsetStep, float yOffsetStep);
     }
-}
\ No newline at end of file
+}
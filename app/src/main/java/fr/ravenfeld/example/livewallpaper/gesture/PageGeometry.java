@@ -0,0 +1,179 @@
+package fr.ravenfeld.example.livewallpaper.gesture;
+
+/**
+ * Geometry of the virtual pages scrolled by the {@link OffsetsDetector}.
+ * <p/>
+ * Positions are in pixels, from 0 to pageCount * pageWidth. Page {@code i} spans the positions
+ * ]i * pageWidth - pageWidth, i * pageWidth]; every lookup is computed in constant time.
+ * <p/>
+ * Beyond the bounds, the touch position can go up to {@link #getMaxTouchOverscroll()}, and is
+ * displayed with a rubber band resistance which never goes further than the overscroll.
+ * <p/>
+ * Instances are immutable, a new one is built when the page count or width changes.
+ */
+public final class PageGeometry {
+
+    public static final float DEFAULT_RUBBER_BAND = 0.5f;
+
+    // the touch position can go this many times the displayed overscroll beyond the bounds
+    private static final float TOUCH_OVERSCROLL_RATIO = 4f;
+
+    private final int mPageCount;
+    private final int mPageWidth;
+    private final float mTotalWidth;
+    private final float mOverscroll;
+    private final float mRubberBand;
+    private final float mMaxTouchOverscroll;
+
+    /**
+     * @param overscroll maximal distance displayed beyond the bounds, in pixels, 0 to clamp
+     * @param rubberBand resistance when overscrolling, ratio between the distance displayed and
+     *                   the distance moved by the finger at the start of the overscroll
+     */
+    public PageGeometry(int pageCount, int pageWidth, float overscroll, float rubberBand) {
+        if (pageCount < 1) {
+            throw new IllegalArgumentException("pageCount must be positive: " + pageCount);
+        }
+        if (pageWidth < 0 || overscroll < 0 || rubberBand <= 0) {
+            throw new IllegalArgumentException("pageWidth, overscroll and rubberBand must be positive");
+        }
+        mPageCount = pageCount;
+        mPageWidth = pageWidth;
+        mTotalWidth = (float) pageCount * pageWidth;
+        mOverscroll = overscroll;
+        mRubberBand = rubberBand;
+        mMaxTouchOverscroll = overscroll / rubberBand * TOUCH_OVERSCROLL_RATIO;
+    }
+
+    public PageGeometry withPageCount(int pageCount) {
+        return new PageGeometry(pageCount, mPageWidth, mOverscroll, mRubberBand);
+    }
+
+    public PageGeometry withPageWidth(int pageWidth) {
+        return new PageGeometry(mPageCount, pageWidth, mOverscroll, mRubberBand);
+    }
+
+    public PageGeometry withOverscroll(float overscroll, float rubberBand) {
+        return new PageGeometry(mPageCount, mPageWidth, overscroll, rubberBand);
+    }
+
+    public int getPageCount() {
+        return mPageCount;
+    }
+
+    public int getPageWidth() {
+        return mPageWidth;
+    }
+
+    public float getTotalWidth() {
+        return mTotalWidth;
+    }
+
+    public float getOverscroll() {
+        return mOverscroll;
+    }
+
+    public float getRubberBand() {
+        return mRubberBand;
+    }
+
+    public float getMaxTouchOverscroll() {
+        return mMaxTouchOverscroll;
+    }
+
+    /**
+     * @return the page ending at or after the position, between 0 and the page count
+     */
+    public int pageAt(float position) {
+        if (mPageWidth == 0) {
+            return 0;
+        }
+        final int page = (int) Math.ceil(position / mPageWidth);
+        return page < 0 ? 0 : (page > mPageCount ? mPageCount : page);
+    }
+
+    /**
+     * @return the end of the page holding the position
+     */
+    public float nextPagePosition(float position) {
+        return (float) pageAt(position) * mPageWidth;
+    }
+
+    /**
+     * @return the start of the page holding the position
+     */
+    public float previousPagePosition(float position) {
+        final int page = pageAt(position) - 1;
+        return page < 0 ? 0 : (float) page * mPageWidth;
+    }
+
+    /**
+     * @return the page boundary closest to the position
+     */
+    public float nearestPagePosition(float position) {
+        if (mPageWidth == 0) {
+            return 0;
+        }
+        return clamp(Math.round(position / mPageWidth) * (float) mPageWidth);
+    }
+
+    public boolean isInBounds(float position) {
+        return position >= 0 && position <= mTotalWidth;
+    }
+
+    public float clamp(float position) {
+        return position < 0 ? 0 : (position > mTotalWidth ? mTotalWidth : position);
+    }
+
+    /**
+     * @return the touch position limited to the bounds extended by the touch overscroll
+     */
+    public float clampTouch(float position) {
+        if (position < -mMaxTouchOverscroll) {
+            return -mMaxTouchOverscroll;
+        }
+        if (position > mTotalWidth + mMaxTouchOverscroll) {
+            return mTotalWidth + mMaxTouchOverscroll;
+        }
+        return position;
+    }
+
+    /**
+     * @return the displayed position for a touch position, with the rubber band resistance
+     * applied beyond the bounds
+     */
+    public float rubberBand(float position) {
+        if (position < 0) {
+            return -dampOverscroll(-position);
+        }
+        if (position > mTotalWidth) {
+            return mTotalWidth + dampOverscroll(position - mTotalWidth);
+        }
+        return position;
+    }
+
+    private float dampOverscroll(float distance) {
+        if (mOverscroll == 0) {
+            return 0;
+        }
+        // slope of mRubberBand at the bound, tends towards mOverscroll
+        return distance * mRubberBand / (1 + distance * mRubberBand / mOverscroll);
+    }
+
+    /**
+     * @return the wallpaper offset of a displayed position, 0 to 1 within the bounds
+     */
+    public float toOffset(float position) {
+        if (mTotalWidth == 0) {
+            return 0.5f;
+        }
+        return position / mTotalWidth;
+    }
+
+    /**
+     * @return the position displayed at a wallpaper offset, inverse of {@link #toOffset(float)}
+     */
+    public float fromOffset(float offset) {
+        return offset * mTotalWidth;
+    }
+}
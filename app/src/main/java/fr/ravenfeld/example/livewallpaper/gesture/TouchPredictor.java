@@ -0,0 +1,180 @@
+package fr.ravenfeld.example.livewallpaper.gesture;
+
+import java.io.PrintWriter;
+
+/**
+ * Extrapolates the position of a drag to the time the frame showing it reaches the screen.
+ * <p/>
+ * The position moves along the velocity of the finger, scaled down by a damping factor so that
+ * a slowing finger is not overtaken, and never past the first and last page. No prediction is
+ * made once the latest touch sample is older than {@link #MAX_HORIZON_NANOS}: the finger is
+ * then considered stopped.
+ * <p/>
+ * Each prediction is checked against the touch samples which follow it: the position of the
+ * finger at the predicted time is interpolated between the two samples around it, and compared
+ * with the predicted position and with the position shown without prediction.
+ * <p/>
+ * The samples come from the touch thread and the predictions from the render thread.
+ */
+public class TouchPredictor {
+
+    public static final float DEFAULT_DAMPING = 0.7f;
+
+    /** Longest extrapolation, in nanoseconds. */
+    public static final long MAX_HORIZON_NANOS = 64000000L;
+
+    // predictions waiting for their check, the frames are shown later than the next sample
+    private static final int MAX_CHECKS = 8;
+
+    private final float mDamping;
+
+    private float mVelocity;
+    private long mVelocityTimeNanos;
+
+    // latest touch sample
+    private float mSamplePosition;
+    private long mSampleTimeNanos;
+
+    // ring of the predictions waiting for the samples around their time, oldest first
+    private final long[] mCheckTimes = new long[MAX_CHECKS];
+    private final float[] mCheckPredicted = new float[MAX_CHECKS];
+    private final float[] mCheckBaseline = new float[MAX_CHECKS];
+    private int mCheckHead;
+    private int mCheckCount;
+    // true while the latest prediction is away from the touch position
+    private boolean mPredicting;
+
+    private long mErrorCount;
+    private double mErrorSum;
+    private double mBaselineErrorSum;
+    private float mMaxError;
+
+    public TouchPredictor() {
+        this(DEFAULT_DAMPING);
+    }
+
+    /**
+     * @param damping fraction of the linear extrapolation applied, between 0 and 1
+     */
+    public TouchPredictor(float damping) {
+        if (damping < 0 || damping > 1) {
+            throw new IllegalArgumentException("damping must be between 0 and 1: " + damping);
+        }
+        mDamping = damping;
+    }
+
+    public float getDamping() {
+        return mDamping;
+    }
+
+    /**
+     * Adds a touch sample of the drag.
+     *
+     * @param position  position of the pages under the finger, in pixels
+     * @param timeNanos time of the sample, in the {@link System#nanoTime()} time base
+     */
+    public synchronized void addSample(float position, long timeNanos) {
+        while (mCheckCount > 0 && timeNanos >= mCheckTimes[mCheckHead]) {
+            final long checkTime = mCheckTimes[mCheckHead];
+            final long span = timeNanos - mSampleTimeNanos;
+            final float actual = span <= 0 || checkTime <= mSampleTimeNanos ? position
+                    : mSamplePosition + (position - mSamplePosition) * (checkTime - mSampleTimeNanos) / span;
+            recordError(Math.abs(mCheckPredicted[mCheckHead] - actual), Math.abs(mCheckBaseline[mCheckHead] - actual));
+            mCheckHead = (mCheckHead + 1) % MAX_CHECKS;
+            mCheckCount--;
+        }
+        mSamplePosition = position;
+        mSampleTimeNanos = timeNanos;
+    }
+
+    /**
+     * @param velocity  velocity of the pages at the given time, in pixels per second
+     * @param timeNanos time of the latest sample the velocity was computed from
+     */
+    public synchronized void setVelocity(float velocity, long timeNanos) {
+        mVelocity = velocity;
+        mVelocityTimeNanos = timeNanos;
+    }
+
+    /**
+     * @return the position expected at the given time, within the pages of the geometry
+     */
+    public synchronized float predict(float position, long presentationTimeNanos, PageGeometry geometry) {
+        final long horizon = presentationTimeNanos - mVelocityTimeNanos;
+        float predicted = position;
+        if (mVelocityTimeNanos != 0 && horizon > 0 && horizon <= MAX_HORIZON_NANOS
+                && geometry.isInBounds(position)) {
+            predicted = geometry.clamp(position + mVelocity * mDamping * horizon / 1000000000f);
+        }
+        mPredicting = predicted != position;
+        if (mPredicting) {
+            if (mCheckCount == MAX_CHECKS) {
+                // drop the oldest check
+                mCheckHead = (mCheckHead + 1) % MAX_CHECKS;
+                mCheckCount--;
+            }
+            final int index = (mCheckHead + mCheckCount) % MAX_CHECKS;
+            mCheckTimes[index] = presentationTimeNanos;
+            mCheckPredicted[index] = predicted;
+            mCheckBaseline[index] = position;
+            mCheckCount++;
+        }
+        return predicted;
+    }
+
+    /**
+     * @return true if the latest prediction differs from the touch position, it must then be
+     * replaced at the next frame even if the finger does not move
+     */
+    public synchronized boolean isPredicting() {
+        return mPredicting;
+    }
+
+    /**
+     * Forgets the drag, at the end of a gesture. The error measures are kept.
+     */
+    public synchronized void reset() {
+        mVelocity = 0;
+        mVelocityTimeNanos = 0;
+        mSampleTimeNanos = 0;
+        mCheckCount = 0;
+        mPredicting = false;
+    }
+
+    public synchronized long getErrorCount() {
+        return mErrorCount;
+    }
+
+    /**
+     * @return mean distance between the predicted and the actual positions, in pixels
+     */
+    public synchronized float getMeanError() {
+        return mErrorCount == 0 ? 0 : (float) (mErrorSum / mErrorCount);
+    }
+
+    /**
+     * @return mean distance between the positions shown without prediction and the actual
+     * positions, in pixels
+     */
+    public synchronized float getBaselineMeanError() {
+        return mErrorCount == 0 ? 0 : (float) (mBaselineErrorSum / mErrorCount);
+    }
+
+    public synchronized float getMaxError() {
+        return mMaxError;
+    }
+
+    public synchronized void dump(PrintWriter writer, String prefix) {
+        writer.printf("%sprediction: damping=%.2f checks=%d meanError=%.1fpx withoutPrediction=%.1fpx maxError=%.1fpx%n",
+                prefix, mDamping, mErrorCount, getMeanError(), getBaselineMeanError(), mMaxError);
+    }
+
+    private void recordError(float error, float baselineError) {
+        mErrorCount++;
+        mErrorSum += error;
+        mBaselineErrorSum += baselineError;
+        if (error > mMaxError) {
+            mMaxError = error;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package fr.ravenfeld.example.livewallpaper.scene;
+
+
+/**
+ * Plain color filling the screen, a fill costs less than the blit of a screen sized bitmap so
+ * it is never cached.
+ */
+public class BackgroundLayer extends Layer {
+
+    private final int mColor;
+
+    public BackgroundLayer(int color) {
+        super(0f);
+        mColor = color;
+    }
+
+    @Override
+    protected void onSizeChanged(int width, int height) {
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return false;
+    }
+
+    @Override
+    protected void onDraw(RenderTarget target) {
+        target.drawColor(mColor);
+    }
+}
@@ -0,0 +1,84 @@
+package fr.ravenfeld.example.livewallpaper.scene;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+/**
+ * Render target drawing on a canvas, reused from one frame to the next with
+ * {@link #setCanvas(Canvas)}.
+ */
+public class CanvasRenderTarget implements RenderTarget {
+
+    private Canvas mCanvas;
+
+    public CanvasRenderTarget() {
+    }
+
+    public CanvasRenderTarget(Canvas canvas) {
+        mCanvas = canvas;
+    }
+
+    public Canvas getCanvas() {
+        return mCanvas;
+    }
+
+    public void setCanvas(Canvas canvas) {
+        mCanvas = canvas;
+    }
+
+    @Override
+    public int getWidth() {
+        return mCanvas.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return mCanvas.getHeight();
+    }
+
+    @Override
+    public void save() {
+        mCanvas.save();
+    }
+
+    @Override
+    public void restore() {
+        mCanvas.restore();
+    }
+
+    @Override
+    public void translate(float dx, float dy) {
+        mCanvas.translate(dx, dy);
+    }
+
+    @Override
+    public void drawColor(int color) {
+        mCanvas.drawColor(color);
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, Paint paint) {
+        mCanvas.drawCircle(cx, cy, radius, paint);
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        mCanvas.drawRect(left, top, right, bottom, paint);
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        mCanvas.drawBitmap(bitmap, left, top, paint);
+    }
+
+    @Override
+    public void drawPoints(float[] pts, int offset, int count, Paint paint) {
+        mCanvas.drawPoints(pts, offset, count, paint);
+    }
+
+    @Override
+    public void drawLines(float[] pts, int offset, int count, Paint paint) {
+        mCanvas.drawLines(pts, offset, count, paint);
+    }
+}
@@ -0,0 +1,36 @@
+package fr.ravenfeld.example.livewallpaper.scene;
+
+/**
+ * Number of objects drawn and culled by the layers during a draw of the scene. A layer
+ * counts as one object, except the layers made of many objects such as
+ * {@link SpriteBatchLayer}, which count each of them.
+ */
+public class DrawStats {
+
+    private int mDrawn;
+    private int mCulled;
+
+    public void reset() {
+        mDrawn = 0;
+        mCulled = 0;
+    }
+
+    public void addDrawn(int count) {
+        mDrawn += count;
+    }
+
+    public void addCulled(int count) {
+        mCulled += count;
+    }
+
+    public int getDrawnCount() {
+        return mDrawn;
+    }
+
+    /**
+     * @return the number of objects skipped because they were out of the viewport
+     */
+    public int getCulledCount() {
+        return mCulled;
+    }
+}
@@ -0,0 +1,164 @@
+package fr.ravenfeld.example.livewallpaper.scene;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+/**
+ * Layer of the scene, scrolled horizontally with its own parallax factor.
+ * <p/>
+ * The content of a layer which does not animate is rendered once in a bitmap covering its
+ * bounds, and only blitted at the scrolled position afterwards. The bitmap is rendered again
+ * when the size changes.
+ * <p/>
+ * A layer with bounds is skipped when they are out of the viewport at the scrolled position. A
+ * layer made of many objects can also cull them one by one, see
+ * {@link #onDraw(RenderTarget, float, float, DrawStats)}.
+ * <p/>
+ * Layers are accessed by the render threads under the lock of their {@link LayerSet}.
+ */
+public abstract class Layer {
+
+    private final float mParallax;
+
+    protected int mWidth;
+    protected int mHeight;
+
+    // bounds of the content in layer coordinates, covered by the cached bitmap
+    private int mLeft;
+    private int mTop;
+    private int mRight;
+    private int mBottom;
+
+    private Bitmap mCache;
+
+    /**
+     * @param parallax distance scrolled by the layer, in screen widths, when the offset goes
+     *                 from 0 to 1. 0 for a fixed layer, negative to scroll along the offset.
+     */
+    protected Layer(float parallax) {
+        mParallax = parallax;
+    }
+
+    public float getParallax() {
+        return mParallax;
+    }
+
+    public final void setSize(int width, int height) {
+        if (width == mWidth && height == mHeight) {
+            return;
+        }
+        mWidth = width;
+        mHeight = height;
+        releaseCache();
+        onSizeChanged(width, height);
+    }
+
+    /**
+     * Called when the size of the screen changed, the layer must update its bounds.
+     */
+    protected abstract void onSizeChanged(int width, int height);
+
+    protected void setBounds(int left, int top, int right, int bottom) {
+        mLeft = left;
+        mTop = top;
+        mRight = right;
+        mBottom = bottom;
+    }
+
+    public boolean isAnimated() {
+        return false;
+    }
+
+    /**
+     * @return true if the content can be rendered once in a bitmap
+     */
+    public boolean isCacheable() {
+        return !isAnimated() && mRight > mLeft && mBottom > mTop;
+    }
+
+    /**
+     * Moves the animation of an animated layer to the given time. The content only depends on
+     * the time, so that the scenes sharing the layer agree whatever their frame rate.
+     *
+     * @param animationTimeNanos time elapsed since the start of the animations
+     * @return true if the content changed
+     */
+    public boolean update(long animationTimeNanos) {
+        return false;
+    }
+
+    /**
+     * Draws the content, in layer coordinates.
+     */
+    protected abstract void onDraw(RenderTarget target);
+
+    /**
+     * Draws the part of the content which is visible on screen, between the given horizontal
+     * coordinates. Draws all the content by default.
+     *
+     * @param stats counts the objects drawn and culled, may be null
+     */
+    protected void onDraw(RenderTarget target, float visibleLeft, float visibleRight, DrawStats stats) {
+        onDraw(target);
+        if (stats != null) {
+            stats.addDrawn(getObjectCount());
+        }
+    }
+
+    /**
+     * @return the number of objects of the layer, counted in the {@link DrawStats}
+     */
+    public int getObjectCount() {
+        return 1;
+    }
+
+    public float getTranslationX(float xOffset) {
+        return (0.5f - xOffset) * mWidth * mParallax;
+    }
+
+    public void draw(RenderTarget target, float xOffset, boolean useCache) {
+        draw(target, xOffset, useCache, null);
+    }
+
+    /**
+     * @param stats counts the objects drawn and culled, may be null
+     */
+    public void draw(RenderTarget target, float xOffset, boolean useCache, DrawStats stats) {
+        final float dx = getTranslationX(xOffset);
+        if (mRight > mLeft && (mRight + dx <= 0 || mLeft + dx >= mWidth)) {
+            if (stats != null) {
+                stats.addCulled(getObjectCount());
+            }
+        } else if (useCache && isCacheable()) {
+            if (mCache == null) {
+                renderCache();
+            }
+            target.drawBitmap(mCache, mLeft + dx, mTop, null);
+            if (stats != null) {
+                stats.addDrawn(getObjectCount());
+            }
+        } else if (dx == 0) {
+            onDraw(target, 0, mWidth, stats);
+        } else {
+            target.save();
+            target.translate(dx, 0);
+            // the screen, in layer coordinates
+            onDraw(target, -dx, mWidth - dx, stats);
+            target.restore();
+        }
+    }
+
+    private void renderCache() {
+        mCache = Bitmap.createBitmap(mRight - mLeft, mBottom - mTop, Bitmap.Config.ARGB_8888);
+        RenderTarget target = new CanvasRenderTarget(new Canvas(mCache));
+        target.translate(-mLeft, -mTop);
+        onDraw(target);
+    }
+
+    public void releaseCache() {
+        if (mCache != null) {
+            mCache.recycle();
+            mCache = null;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package fr.ravenfeld.example.livewallpaper.scene;
+
+import java.util.ArrayList;
+
+/**
+ * Layers of a scene at a given size, shared by the scenes of that size through a
+ * {@link SceneModel}.
+ * <p/>
+ * Several render threads can use the same set: a thread holds the lock of the set while it
+ * draws it, from the update of the animated layers to its last draw call, so that it draws
+ * the layers at its own animation time.
+ */
+public class LayerSet {
+
+    private final ArrayList<Layer> mLayers;
+    private final int mWidth;
+    private final int mHeight;
+
+    // guarded by the SceneModel
+    int mReferences;
+
+    LayerSet(ArrayList<Layer> layers, int width, int height) {
+        mLayers = layers;
+        mWidth = width;
+        mHeight = height;
+        final int count = layers.size();
+        for (int i = 0; i < count; i++) {
+            layers.get(i).setSize(width, height);
+        }
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getLayerCount() {
+        return mLayers.size();
+    }
+
+    public Layer getLayer(int index) {
+        return mLayers.get(index);
+    }
+
+    /**
+     * Updates the animated layers and draws the set, in one critical section.
+     *
+     * @param animationTimeNanos time elapsed since the start of the animations
+     * @param stats              counts the objects drawn and culled, may be null
+     */
+    public synchronized void updateAndDraw(long animationTimeNanos, RenderTarget target, float xOffset,
+                                           boolean useCache, DrawStats stats) {
+        final int count = mLayers.size();
+        for (int i = 0; i < count; i++) {
+            Layer layer = mLayers.get(i);
+            if (layer.isAnimated()) {
+                layer.update(animationTimeNanos);
+            }
+        }
+        draw(target, xOffset, useCache, stats);
+    }
+
+    /**
+     * Draws the layers as they were last updated, by any scene sharing the set.
+     *
+     * @param stats counts the objects drawn and culled, may be null
+     */
+    public synchronized void draw(RenderTarget target, float xOffset, boolean useCache, DrawStats stats) {
+        final int count = mLayers.size();
+        for (int i = 0; i < count; i++) {
+            mLayers.get(i).draw(target, xOffset, useCache, stats);
+        }
+    }
+
+    public synchronized void releaseCaches() {
+        final int count = mLayers.size();
+        for (int i = 0; i < count; i++) {
+            mLayers.get(i).releaseCache();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package fr.ravenfeld.example.livewallpaper.scene;
+
+import android.graphics.Paint;
+import android.graphics.Paint.Style;
+
+/**
+ * Filled circle orbiting around the middle of the screen, at 30 degrees per second: the speed
+ * of the former one degree per frame at 30 fps.
+ */
+public class OrbitLayer extends Layer {
+
+    // 30 degrees per second, a full turn being 2^32
+    private static final double PHASE_PER_NANO = 30.0 / 360.0 * 4294967296.0 / 1000000000.0;
+
+    private final TrigTable mTrigTable = TrigTable.getDefault();
+
+    private final Paint mPaint;
+    private final float mOrbitRatio;
+
+    private float mCenterX;
+    private float mCenterY;
+    private float mOrbitRadius;
+    private float mCircleRadius;
+
+    private int mCircleX;
+    private int mCircleY;
+
+    // fixed point angle, a full turn is 2^32
+    private int mAnglePhase;
+
+    /**
+     * @param orbitRatio radius of the orbit relatively to the smallest side of the screen
+     */
+    public OrbitLayer(float parallax, float orbitRatio, int color) {
+        super(parallax);
+        mOrbitRatio = orbitRatio;
+
+        mPaint = new Paint();
+        mPaint.setAntiAlias(true);
+        mPaint.setColor(color);
+        mPaint.setStyle(Style.FILL);
+    }
+
+    @Override
+    public boolean isAnimated() {
+        return true;
+    }
+
+    @Override
+    protected void onSizeChanged(int width, int height) {
+        int size = (width < height) ? width : height;
+        mCenterX = width / 2;
+        mCenterY = height / 2;
+        mOrbitRadius = (int) (size * mOrbitRatio);
+        mCircleRadius = mOrbitRadius * 0.2f;
+        updateCircle();
+    }
+
+    @Override
+    public boolean update(long animationTimeNanos) {
+        // the phase wraps around with the turns
+        final int anglePhase = (int) (long) (animationTimeNanos * PHASE_PER_NANO);
+        if (anglePhase == mAnglePhase) {
+            return false;
+        }
+        mAnglePhase = anglePhase;
+        updateCircle();
+        return true;
+    }
+
+    private void updateCircle() {
+        mCircleX = (int) (mCenterX - mOrbitRadius * mTrigTable.cos(mAnglePhase));
+        mCircleY = (int) (mCenterY - mOrbitRadius * mTrigTable.sin(mAnglePhase));
+    }
+
+    @Override
+    protected void onDraw(RenderTarget target) {
+        target.drawCircle(mCircleX, mCircleY, mCircleRadius, mPaint);
+    }
+}
@@ -0,0 +1,317 @@
+package fr.ravenfeld.example.livewallpaper.scene;
+
+import android.graphics.Bitmap;
+import android.graphics.Paint;
+
+import java.util.Arrays;
+
+/**
+ * Render target recording the draw operations in primitive buffers, like a display list.
+ * <p/>
+ * The buffers grow to the size of the largest frame and are reused after {@link #reset()}, so
+ * recording a frame does not allocate. A recording can be played back on another target with
+ * {@link #replay(RenderTarget)}.
+ * <p/>
+ * Besides the draw calls, the recording estimates the pixels covered by each operation within
+ * the target bounds: the ratio between the pixels covered and the pixels of the target is the
+ * overdraw of the frame. Circles and strokes are estimated from their area, without
+ * antialiasing.
+ */
+public class RecordingRenderTarget implements RenderTarget {
+
+    public static final int OP_SAVE = 0;
+    public static final int OP_RESTORE = 1;
+    public static final int OP_TRANSLATE = 2;
+    public static final int OP_COLOR = 3;
+    public static final int OP_CIRCLE = 4;
+    public static final int OP_RECT = 5;
+    public static final int OP_BITMAP = 6;
+    public static final int OP_POINTS = 7;
+    public static final int OP_LINES = 8;
+
+    // per operation: type, index of its first argument, index of its paint or bitmap, or the
+    // color of a drawColor
+    private static final int OP_SIZE = 3;
+
+    private final int mWidth;
+    private final int mHeight;
+
+    private int[] mOps = new int[OP_SIZE * 32];
+    private float[] mArgs = new float[128];
+    private Object[] mRefs = new Object[32];
+    private int mOpCount;
+    private int mArgCount;
+    private int mRefCount;
+
+    private int mDrawCalls;
+    private double mCoveredPixels;
+
+    // translation of the operations, saved by save()
+    private float mTranslateX;
+    private float mTranslateY;
+    private float[] mSavedTranslations = new float[16];
+    private int mSaveCount;
+
+    public RecordingRenderTarget(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /**
+     * Clears the recording, before the next frame.
+     */
+    public void reset() {
+        // drop the references to the paints and bitmaps of the previous frame
+        Arrays.fill(mRefs, 0, mRefCount, null);
+        mOpCount = 0;
+        mArgCount = 0;
+        mRefCount = 0;
+        mDrawCalls = 0;
+        mCoveredPixels = 0;
+        mTranslateX = 0;
+        mTranslateY = 0;
+        mSaveCount = 0;
+    }
+
+    @Override
+    public int getWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getOpCount() {
+        return mOpCount;
+    }
+
+    public int getOpType(int index) {
+        return mOps[index * OP_SIZE];
+    }
+
+    /**
+     * @return the number of operations drawing pixels, save, restore and translate excluded
+     */
+    public int getDrawCallCount() {
+        return mDrawCalls;
+    }
+
+    public double getCoveredPixels() {
+        return mCoveredPixels;
+    }
+
+    /**
+     * @return the number of times each pixel of the target is drawn, on average
+     */
+    public float getOverdraw() {
+        final double pixels = (double) mWidth * mHeight;
+        return pixels == 0 ? 0 : (float) (mCoveredPixels / pixels);
+    }
+
+    @Override
+    public void save() {
+        if (mSaveCount * 2 == mSavedTranslations.length) {
+            mSavedTranslations = grow(mSavedTranslations, mSavedTranslations.length * 2);
+        }
+        mSavedTranslations[mSaveCount * 2] = mTranslateX;
+        mSavedTranslations[mSaveCount * 2 + 1] = mTranslateY;
+        mSaveCount++;
+        addOp(OP_SAVE, 0, null);
+    }
+
+    @Override
+    public void restore() {
+        if (mSaveCount == 0) {
+            throw new IllegalStateException("Underflow in restore");
+        }
+        mSaveCount--;
+        mTranslateX = mSavedTranslations[mSaveCount * 2];
+        mTranslateY = mSavedTranslations[mSaveCount * 2 + 1];
+        addOp(OP_RESTORE, 0, null);
+    }
+
+    @Override
+    public void translate(float dx, float dy) {
+        mTranslateX += dx;
+        mTranslateY += dy;
+        final int args = addOp(OP_TRANSLATE, 2, null);
+        mArgs[args] = dx;
+        mArgs[args + 1] = dy;
+    }
+
+    @Override
+    public void drawColor(int color) {
+        addOp(OP_COLOR, 0, null);
+        // no reference needed, the slot holds the color
+        mOps[(mOpCount - 1) * OP_SIZE + 2] = color;
+        mDrawCalls++;
+        mCoveredPixels += (double) mWidth * mHeight;
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, Paint paint) {
+        final int args = addOp(OP_CIRCLE, 3, paint);
+        mArgs[args] = cx;
+        mArgs[args + 1] = cy;
+        mArgs[args + 2] = radius;
+        mDrawCalls++;
+
+        final float outer = radius + (isStroke(paint) ? paint.getStrokeWidth() / 2 : 0);
+        final double box = coverage(cx - outer, cy - outer, cx + outer, cy + outer);
+        if (box > 0) {
+            double area = Math.PI * outer * outer;
+            if (isStroke(paint)) {
+                final float inner = Math.max(0, radius - paint.getStrokeWidth() / 2);
+                area -= Math.PI * inner * inner;
+            }
+            // the visible part of the bounding box, applied to the area of the shape
+            mCoveredPixels += area * box / (4.0 * outer * outer);
+        }
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        final int args = addOp(OP_RECT, 4, paint);
+        mArgs[args] = left;
+        mArgs[args + 1] = top;
+        mArgs[args + 2] = right;
+        mArgs[args + 3] = bottom;
+        mDrawCalls++;
+        mCoveredPixels += coverage(left, top, right, bottom);
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        final int args = addOp(OP_BITMAP, 2, bitmap);
+        mArgs[args] = left;
+        mArgs[args + 1] = top;
+        // the paint of a bitmap is stored in the next reference
+        addRef(paint);
+        mDrawCalls++;
+        mCoveredPixels += coverage(left, top, left + bitmap.getWidth(), top + bitmap.getHeight());
+    }
+
+    @Override
+    public void drawPoints(float[] pts, int offset, int count, Paint paint) {
+        final int args = addOp(OP_POINTS, count + 1, paint);
+        mArgs[args] = count;
+        System.arraycopy(pts, offset, mArgs, args + 1, count);
+        mDrawCalls++;
+        final float size = Math.max(1f, paint.getStrokeWidth());
+        mCoveredPixels += (count / 2) * (double) size * size;
+    }
+
+    @Override
+    public void drawLines(float[] pts, int offset, int count, Paint paint) {
+        final int args = addOp(OP_LINES, count + 1, paint);
+        mArgs[args] = count;
+        System.arraycopy(pts, offset, mArgs, args + 1, count);
+        mDrawCalls++;
+        final float width = Math.max(1f, paint.getStrokeWidth());
+        for (int i = offset; i + 3 < offset + count; i += 4) {
+            final float dx = pts[i + 2] - pts[i];
+            final float dy = pts[i + 3] - pts[i + 1];
+            mCoveredPixels += Math.sqrt(dx * dx + dy * dy) * width;
+        }
+    }
+
+    /**
+     * Plays the recorded operations back on another target.
+     */
+    public void replay(RenderTarget target) {
+        final int[] ops = mOps;
+        final float[] args = mArgs;
+        final Object[] refs = mRefs;
+        for (int i = 0; i < mOpCount * OP_SIZE; i += OP_SIZE) {
+            final int a = ops[i + 1];
+            final int r = ops[i + 2];
+            switch (ops[i]) {
+                case OP_SAVE:
+                    target.save();
+                    break;
+                case OP_RESTORE:
+                    target.restore();
+                    break;
+                case OP_TRANSLATE:
+                    target.translate(args[a], args[a + 1]);
+                    break;
+                case OP_COLOR:
+                    target.drawColor(r);
+                    break;
+                case OP_CIRCLE:
+                    target.drawCircle(args[a], args[a + 1], args[a + 2], (Paint) refs[r]);
+                    break;
+                case OP_RECT:
+                    target.drawRect(args[a], args[a + 1], args[a + 2], args[a + 3], (Paint) refs[r]);
+                    break;
+                case OP_BITMAP:
+                    target.drawBitmap((Bitmap) refs[r], args[a], args[a + 1], (Paint) refs[r + 1]);
+                    break;
+                case OP_POINTS:
+                    target.drawPoints(args, a + 1, (int) args[a], (Paint) refs[r]);
+                    break;
+                case OP_LINES:
+                    target.drawLines(args, a + 1, (int) args[a], (Paint) refs[r]);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return the index of the first of the argCount arguments of the operation
+     */
+    private int addOp(int type, int argCount, Object ref) {
+        if (mOpCount * OP_SIZE == mOps.length) {
+            mOps = grow(mOps, mOps.length * 2);
+        }
+        if (mArgCount + argCount > mArgs.length) {
+            mArgs = grow(mArgs, Math.max(mArgs.length * 2, mArgCount + argCount));
+        }
+        final int op = mOpCount * OP_SIZE;
+        mOps[op] = type;
+        mOps[op + 1] = mArgCount;
+        mOps[op + 2] = mRefCount;
+        addRef(ref);
+        mOpCount++;
+        final int args = mArgCount;
+        mArgCount += argCount;
+        return args;
+    }
+
+    private void addRef(Object ref) {
+        if (mRefCount == mRefs.length) {
+            final Object[] refs = new Object[mRefs.length * 2];
+            System.arraycopy(mRefs, 0, refs, 0, mRefCount);
+            mRefs = refs;
+        }
+        mRefs[mRefCount++] = ref;
+    }
+
+    // Arrays.copyOf needs API 9
+    private static float[] grow(float[] array, int length) {
+        final float[] grown = new float[length];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private static int[] grow(int[] array, int length) {
+        final int[] grown = new int[length];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private static boolean isStroke(Paint paint) {
+        return paint != null && paint.getStyle() == Paint.Style.STROKE;
+    }
+
+    // pixels of the rectangle, translated, within the bounds of the target
+    private double coverage(float left, float top, float right, float bottom) {
+        final float l = Math.max(0, left + mTranslateX);
+        final float t = Math.max(0, top + mTranslateY);
+        final float r = Math.min(mWidth, right + mTranslateX);
+        final float b = Math.min(mHeight, bottom + mTranslateY);
+        return r > l && b > t ? (double) (r - l) * (b - t) : 0;
+    }
+}
@@ -0,0 +1,41 @@
+package fr.ravenfeld.example.livewallpaper.scene;
+
+import android.graphics.Bitmap;
+import android.graphics.Paint;
+
+/**
+ * Surface the layers draw on: the subset of {@link android.graphics.Canvas} used by the scene.
+ * <p/>
+ * {@link CanvasRenderTarget} draws on a canvas, {@link RecordingRenderTarget} records the draw
+ * operations so that the scene can be drawn and measured without a device.
+ */
+public interface RenderTarget {
+
+    public int getWidth();
+
+    public int getHeight();
+
+    public void save();
+
+    public void restore();
+
+    public void translate(float dx, float dy);
+
+    public void drawColor(int color);
+
+    public void drawCircle(float cx, float cy, float radius, Paint paint);
+
+    public void drawRect(float left, float top, float right, float bottom, Paint paint);
+
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint);
+
+    /**
+     * @param count number of values read from pts, two per point
+     */
+    public void drawPoints(float[] pts, int offset, int count, Paint paint);
+
+    /**
+     * @param count number of values read from pts, four per line
+     */
+    public void drawLines(float[] pts, int offset, int count, Paint paint);
+}
@@ -0,0 +1,56 @@
+package fr.ravenfeld.example.livewallpaper.scene;
+
+import android.graphics.Paint;
+import android.graphics.Paint.Style;
+
+/**
+ * Stroked circle with a dot at its center, in the middle of the screen.
+ */
+public class RingLayer extends Layer {
+
+    private static final float CENTER_RADIUS = 5f;
+
+    private final Paint mRingPaint;
+    private final Paint mCenterPaint;
+    private final float mRadiusRatio;
+
+    private float mCenterX;
+    private float mCenterY;
+    private float mRadius;
+
+    /**
+     * @param radiusRatio radius of the ring relatively to the smallest side of the screen
+     */
+    public RingLayer(float parallax, float radiusRatio, int ringColor, int centerColor) {
+        super(parallax);
+        mRadiusRatio = radiusRatio;
+
+        mRingPaint = new Paint();
+        mRingPaint.setAntiAlias(true);
+        mRingPaint.setColor(ringColor);
+        mRingPaint.setStyle(Style.STROKE);
+        mRingPaint.setStrokeWidth(3.0f);
+
+        mCenterPaint = new Paint();
+        mCenterPaint.setAntiAlias(true);
+        mCenterPaint.setColor(centerColor);
+        mCenterPaint.setStyle(Style.FILL);
+    }
+
+    @Override
+    protected void onSizeChanged(int width, int height) {
+        int size = (width < height) ? width : height;
+        mCenterX = width / 2;
+        mCenterY = height / 2;
+        mRadius = (int) (size * mRadiusRatio);
+
+        final int extent = (int) Math.ceil(mRadius + mRingPaint.getStrokeWidth());
+        setBounds((int) mCenterX - extent, (int) mCenterY - extent, (int) mCenterX + extent, (int) mCenterY + extent);
+    }
+
+    @Override
+    protected void onDraw(RenderTarget target) {
+        target.drawCircle(mCenterX, mCenterY, mRadius, mRingPaint);
+        target.drawCircle(mCenterX, mCenterY, CENTER_RADIUS, mCenterPaint);
+    }
+}
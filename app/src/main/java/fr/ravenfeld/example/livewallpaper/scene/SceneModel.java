@@ -0,0 +1,82 @@
+package fr.ravenfeld.example.livewallpaper.scene;
+
+import java.util.ArrayList;
+
+/**
+ * Content shared by the scenes of a wallpaper service, such as the home screen and the preview.
+ * <p/>
+ * The scenes of the same size share their layers, and the pre-rendered bitmaps of these
+ * layers; the layers are released when the last scene of that size releases them. The
+ * animations run from a common start time, so every scene shows them at the same point
+ * whatever its frame rate.
+ */
+public class SceneModel {
+
+    /**
+     * Creates the layers of a scene, from back to front. Called once per size in use.
+     */
+    public interface LayerFactory {
+        public void onCreateLayers(ArrayList<Layer> layers);
+    }
+
+    private final LayerFactory mFactory;
+    private final long mAnimationStartNanos;
+
+    // a phone rarely shows more than two sizes at the same time
+    private final ArrayList<LayerSet> mLayerSets = new ArrayList<LayerSet>(2);
+
+    public SceneModel(LayerFactory factory) {
+        this(factory, System.nanoTime());
+    }
+
+    /**
+     * @param animationStartNanos time at which the animations start, in the
+     *                            {@link System#nanoTime()} time base
+     */
+    public SceneModel(LayerFactory factory, long animationStartNanos) {
+        mFactory = factory;
+        mAnimationStartNanos = animationStartNanos;
+    }
+
+    public long getAnimationStartNanos() {
+        return mAnimationStartNanos;
+    }
+
+    /**
+     * @return the layers for the size, created if no scene of that size uses them, to be
+     * handed back to {@link #release(LayerSet)}
+     */
+    public synchronized LayerSet acquire(int width, int height) {
+        final int count = mLayerSets.size();
+        for (int i = 0; i < count; i++) {
+            LayerSet set = mLayerSets.get(i);
+            if (set.getWidth() == width && set.getHeight() == height) {
+                set.mReferences++;
+                return set;
+            }
+        }
+        ArrayList<Layer> layers = new ArrayList<Layer>();
+        mFactory.onCreateLayers(layers);
+        LayerSet set = new LayerSet(layers, width, height);
+        set.mReferences = 1;
+        mLayerSets.add(set);
+        return set;
+    }
+
+    public synchronized void release(LayerSet set) {
+        if (--set.mReferences == 0) {
+            mLayerSets.remove(set);
+            set.releaseCaches();
+        }
+    }
+
+    /**
+     * Releases the pre-rendered layers of every size, they are rendered again when drawn.
+     */
+    public synchronized void releaseCaches() {
+        final int count = mLayerSets.size();
+        for (int i = 0; i < count; i++) {
+            mLayerSets.get(i).releaseCaches();
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package fr.ravenfeld.example.livewallpaper.scene;
+
+import android.graphics.Paint;
+import android.graphics.Paint.Cap;
+import android.graphics.Paint.Style;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Many small round sprites drifting across the layer, each in a straight line at its own
+ * speed and wrapping around the edges.
+ * <p/>
+ * The sprites are stored as a structure of arrays of primitives, and moved by one loop. Their
+ * positions are then bucketed, in the point buffer drawn by the canvas, by color and by column
+ * of the field: the sprites of a color within a range of columns are contiguous. A frame costs
+ * one {@link RenderTarget#drawPoints} per color of the palette whatever the number of sprites,
+ * only covers the columns around the viewport, and allocates nothing.
+ * <p/>
+ * The field covers the screen and the distance the layer is scrolled by its parallax, so that
+ * the screen is filled at every offset. Positions and velocities are given relatively to the
+ * field, which keeps them valid when the size changes.
+ */
+public class SpriteBatchLayer extends Layer {
+
+    // the motion repeats with this period, so that the time stays precise as a float
+    private static final long PERIOD_NANOS = 1000L * 1000000000L;
+    private static final float PERIOD_SECONDS = PERIOD_NANOS / 1000000000f;
+
+    // width of the columns of the field, relatively to the screen width
+    private static final float CELL_WIDTH_RATIO = 0.25f;
+
+    private final Paint[] mPaints;
+    private final float mSpriteSize;
+
+    // start position and velocity of each sprite, in fields and fields per second
+    private float[] mX0;
+    private float[] mY0;
+    private float[] mVx;
+    private float[] mVy;
+    private int[] mColorIndex;
+    private int mCount;
+
+    // x, y of each sprite in layer coordinates, bucketed by key = color * mCellCount + column
+    private float[] mPoints;
+    // the sprites of a key are at [mKeyStart[key], mKeyStart[key + 1]) in mPoints
+    private int[] mKeyStart;
+    private int[] mKeyNext;
+    // positions and keys in the order of the sprites, before bucketing
+    private float[] mScratchPoints;
+    private int[] mScratchKeys;
+    private int mCellCount = 1;
+    private float mCellWidth = 1;
+
+    private float mFieldLeft;
+    private float mFieldWidth;
+    private float mFieldHeight;
+    private long mAnimationTimeNanos;
+    // false when the sprites or the size changed since the positions were computed
+    private boolean mPositioned;
+
+    /**
+     * @param palette    colors of the sprites, one draw call each
+     * @param spriteSize diameter of the sprites, in pixels
+     * @param capacity   initial number of sprites the buffers can hold
+     */
+    public SpriteBatchLayer(float parallax, int[] palette, float spriteSize, int capacity) {
+        super(parallax);
+        if (palette.length == 0) {
+            throw new IllegalArgumentException("palette must not be empty");
+        }
+        mSpriteSize = spriteSize;
+        mPaints = new Paint[palette.length];
+        for (int i = 0; i < palette.length; i++) {
+            final Paint paint = new Paint();
+            paint.setAntiAlias(true);
+            paint.setColor(palette[i]);
+            paint.setStyle(Style.STROKE);
+            paint.setStrokeCap(Cap.ROUND);
+            paint.setStrokeWidth(spriteSize);
+            mPaints[i] = paint;
+        }
+        capacity = Math.max(capacity, 1);
+        mX0 = new float[capacity];
+        mY0 = new float[capacity];
+        mVx = new float[capacity];
+        mVy = new float[capacity];
+        mColorIndex = new int[capacity];
+        mPoints = new float[capacity * 2];
+        mScratchPoints = new float[capacity * 2];
+        mScratchKeys = new int[capacity];
+        mKeyStart = new int[palette.length + 1];
+        mKeyNext = new int[palette.length + 1];
+    }
+
+    /**
+     * @return a layer of sprites at random positions, speeds and colors, the same for a given
+     * seed
+     * @param maxSpeed largest speed along each axis, in fields per second
+     */
+    public static SpriteBatchLayer createRandom(float parallax, int[] palette, float spriteSize,
+                                                int count, float maxSpeed, long seed) {
+        final SpriteBatchLayer layer = new SpriteBatchLayer(parallax, palette, spriteSize, count);
+        final Random random = new Random(seed);
+        for (int i = 0; i < count; i++) {
+            layer.addSprite(random.nextFloat(), random.nextFloat(),
+                    (random.nextFloat() * 2 - 1) * maxSpeed, (random.nextFloat() * 2 - 1) * maxSpeed,
+                    random.nextInt(palette.length));
+        }
+        return layer;
+    }
+
+    /**
+     * @param x          start position, 0 to 1 from the left to the right of the field
+     * @param y          start position, 0 to 1 from the top to the bottom of the field
+     * @param vx         velocity, in fields per second, rounded to a multiple of 1/1000
+     * @param vy         same as vx, vertically
+     * @param colorIndex index of the color in the palette
+     */
+    public void addSprite(float x, float y, float vx, float vy, int colorIndex) {
+        if (colorIndex < 0 || colorIndex >= mPaints.length) {
+            throw new IllegalArgumentException("colorIndex out of the palette: " + colorIndex);
+        }
+        if (mCount == mX0.length) {
+            final int capacity = mCount * 2;
+            mX0 = grow(mX0, capacity);
+            mY0 = grow(mY0, capacity);
+            mVx = grow(mVx, capacity);
+            mVy = grow(mVy, capacity);
+            mColorIndex = grow(mColorIndex, capacity);
+            mPoints = grow(mPoints, capacity * 2);
+            mScratchPoints = new float[capacity * 2];
+            mScratchKeys = new int[capacity];
+        }
+        mX0[mCount] = wrap(x);
+        mY0[mCount] = wrap(y);
+        // a whole number of turns per period, the motion is continuous when the time wraps
+        mVx[mCount] = Math.round(vx * PERIOD_SECONDS) / PERIOD_SECONDS;
+        mVy[mCount] = Math.round(vy * PERIOD_SECONDS) / PERIOD_SECONDS;
+        mColorIndex[mCount] = colorIndex;
+        mCount++;
+        // moved at the next update or draw
+        mPositioned = false;
+    }
+
+    public int getSpriteCount() {
+        return mCount;
+    }
+
+    public float getSpriteSize() {
+        return mSpriteSize;
+    }
+
+    public int getColorCount() {
+        return mPaints.length;
+    }
+
+    @Override
+    public int getObjectCount() {
+        return mCount;
+    }
+
+    @Override
+    public boolean isAnimated() {
+        return true;
+    }
+
+    @Override
+    protected void onSizeChanged(int width, int height) {
+        final float scroll = Math.abs(getParallax()) * width;
+        mFieldLeft = -scroll / 2;
+        mFieldWidth = width + scroll;
+        mFieldHeight = height;
+        mCellCount = width > 0 ? Math.max(1, (int) Math.ceil(mFieldWidth / (width * CELL_WIDTH_RATIO))) : 1;
+        mCellWidth = mFieldWidth > 0 ? mFieldWidth / mCellCount : 1;
+        mKeyStart = new int[mPaints.length * mCellCount + 1];
+        mKeyNext = new int[mKeyStart.length];
+        // positioned now, the scene only updates its layers while it is animated
+        mPositioned = false;
+        update(mAnimationTimeNanos);
+    }
+
+    @Override
+    public boolean update(long animationTimeNanos) {
+        if (mPositioned && animationTimeNanos == mAnimationTimeNanos) {
+            return false;
+        }
+        mAnimationTimeNanos = animationTimeNanos;
+        mPositioned = true;
+
+        final float t = (animationTimeNanos % PERIOD_NANOS) / 1000000000f;
+        final float left = mFieldLeft;
+        final float width = mFieldWidth;
+        final float height = mFieldHeight;
+        final float[] x0 = mX0;
+        final float[] y0 = mY0;
+        final float[] vx = mVx;
+        final float[] vy = mVy;
+        final int[] colorIndex = mColorIndex;
+        final float[] scratch = mScratchPoints;
+        final int[] keys = mScratchKeys;
+        final int[] keyStart = mKeyStart;
+        final int cells = mCellCount;
+        final int count = mCount;
+        Arrays.fill(keyStart, 0);
+        for (int i = 0, p = 0; i < count; i++, p += 2) {
+            float x = x0[i] + vx[i] * t;
+            x -= (int) x;
+            if (x < 0) {
+                x += 1;
+            }
+            float y = y0[i] + vy[i] * t;
+            y -= (int) y;
+            if (y < 0) {
+                y += 1;
+            }
+            scratch[p] = left + x * width;
+            scratch[p + 1] = y * height;
+            final int cell = Math.min((int) (x * cells), cells - 1);
+            final int key = colorIndex[i] * cells + cell;
+            keys[i] = key;
+            keyStart[key + 1]++;
+        }
+
+        // counting sort of the positions on their key
+        for (int k = 1; k < keyStart.length; k++) {
+            keyStart[k] += keyStart[k - 1];
+        }
+        final int[] next = mKeyNext;
+        System.arraycopy(keyStart, 0, next, 0, keyStart.length);
+        final float[] points = mPoints;
+        for (int i = 0, p = 0; i < count; i++, p += 2) {
+            final int q = next[keys[i]]++ * 2;
+            points[q] = scratch[p];
+            points[q + 1] = scratch[p + 1];
+        }
+        return true;
+    }
+
+    @Override
+    protected void onDraw(RenderTarget target) {
+        if (!mPositioned) {
+            update(mAnimationTimeNanos);
+        }
+        drawCells(target, 0, mCellCount - 1);
+    }
+
+    @Override
+    protected void onDraw(RenderTarget target, float visibleLeft, float visibleRight, DrawStats stats) {
+        if (!mPositioned) {
+            update(mAnimationTimeNanos);
+        }
+        // the sprites overlapping the viewport by their radius are in the margin
+        final float margin = mSpriteSize;
+        final int first = Math.max(0, (int) Math.floor((visibleLeft - margin - mFieldLeft) / mCellWidth));
+        final int last = Math.min(mCellCount - 1, (int) Math.floor((visibleRight + margin - mFieldLeft) / mCellWidth));
+        final int drawn = first <= last ? drawCells(target, first, last) : 0;
+        if (stats != null) {
+            stats.addDrawn(drawn);
+            stats.addCulled(mCount - drawn);
+        }
+    }
+
+    /**
+     * Draws the sprites of the columns first to last included, for each color.
+     *
+     * @return the number of sprites drawn
+     */
+    private int drawCells(RenderTarget target, int first, int last) {
+        final int[] keyStart = mKeyStart;
+        int drawn = 0;
+        for (int c = 0; c < mPaints.length; c++) {
+            final int from = keyStart[c * mCellCount + first];
+            final int to = keyStart[c * mCellCount + last + 1];
+            if (to > from) {
+                target.drawPoints(mPoints, from * 2, (to - from) * 2, mPaints[c]);
+                drawn += to - from;
+            }
+        }
+        return drawn;
+    }
+
+    // Arrays.copyOf needs API 9
+    private static float[] grow(float[] array, int length) {
+        final float[] grown = new float[length];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private static int[] grow(int[] array, int length) {
+        final int[] grown = new int[length];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private static float wrap(float value) {
+        value -= (int) value;
+        return value < 0 ? value + 1 : value;
+    }
+}
@@ -0,0 +1,91 @@
+package fr.ravenfeld.example.livewallpaper.scene;
+
+/**
+ * Precomputed sine and cosine, indexed by a fixed point phase.
+ * <p/>
+ * A phase is an int where the full 2^32 range maps to one turn, so angles are stepped with
+ * integer additions and wrap around for free on overflow. The table keeps the
+ * {@code resolutionBits} most significant bits of the phase: phases falling on a table entry are
+ * exact, any other phase is truncated to the entry below, with an error on the result bounded
+ * by {@link #getMaxError()} = 2&pi; / 2^resolutionBits.
+ * <p/>
+ * Tables are immutable and shared, see {@link #get(int)}.
+ */
+public final class TrigTable {
+
+    public static final int DEFAULT_RESOLUTION_BITS = 12;
+    public static final int MIN_RESOLUTION_BITS = 2;
+    public static final int MAX_RESOLUTION_BITS = 20;
+
+    private static final double PHASE_PER_TURN = 4294967296.0;
+
+    private static final TrigTable[] sTables = new TrigTable[MAX_RESOLUTION_BITS + 1];
+
+    private final int mResolutionBits;
+    private final int mShift;
+    private final int mQuarter;
+    // sin over one turn and a quarter, cos(a) is read as sin(a + pi/2)
+    private final float[] mSin;
+
+    private TrigTable(int resolutionBits) {
+        mResolutionBits = resolutionBits;
+        mShift = 32 - resolutionBits;
+        final int size = 1 << resolutionBits;
+        mQuarter = size / 4;
+        mSin = new float[size + mQuarter];
+        for (int i = 0; i < mSin.length; i++) {
+            mSin[i] = (float) Math.sin(2.0 * Math.PI * i / size);
+        }
+    }
+
+    public static TrigTable getDefault() {
+        return get(DEFAULT_RESOLUTION_BITS);
+    }
+
+    /**
+     * @param resolutionBits log2 of the number of entries per turn
+     */
+    public static synchronized TrigTable get(int resolutionBits) {
+        if (resolutionBits < MIN_RESOLUTION_BITS || resolutionBits > MAX_RESOLUTION_BITS) {
+            throw new IllegalArgumentException("resolutionBits must be in [" + MIN_RESOLUTION_BITS + ", "
+                    + MAX_RESOLUTION_BITS + "]: " + resolutionBits);
+        }
+        TrigTable table = sTables[resolutionBits];
+        if (table == null) {
+            table = new TrigTable(resolutionBits);
+            sTables[resolutionBits] = table;
+        }
+        return table;
+    }
+
+    public static int degreesToPhase(double degrees) {
+        return (int) Math.round(degrees / 360.0 * PHASE_PER_TURN);
+    }
+
+    public static int radiansToPhase(double radians) {
+        return (int) Math.round(radians / (2.0 * Math.PI) * PHASE_PER_TURN);
+    }
+
+    public static double phaseToRadians(int phase) {
+        return 2.0 * Math.PI * (phase & 0xffffffffL) / PHASE_PER_TURN;
+    }
+
+    public int getResolutionBits() {
+        return mResolutionBits;
+    }
+
+    /**
+     * @return the maximal absolute error of {@link #sin(int)} and {@link #cos(int)}
+     */
+    public double getMaxError() {
+        return 2.0 * Math.PI / (1 << mResolutionBits);
+    }
+
+    public float sin(int phase) {
+        return mSin[phase >>> mShift];
+    }
+
+    public float cos(int phase) {
+        return mSin[(phase >>> mShift) + mQuarter];
+    }
+}
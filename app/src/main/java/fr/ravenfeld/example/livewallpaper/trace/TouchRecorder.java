@@ -0,0 +1,166 @@
+package fr.ravenfeld.example.livewallpaper.trace;
+
+import android.util.Log;
+import android.view.MotionEvent;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import fr.ravenfeld.example.livewallpaper.gesture.OffsetsDetector;
+import fr.ravenfeld.example.livewallpaper.gesture.TouchPredictor;
+
+/**
+ * Records what goes in and out of an {@link OffsetsDetector}, in the {@link TouchTrace} format.
+ * <p/>
+ * The owner of the detector calls {@link #onTouchEvent(MotionEvent)} with each event fed to
+ * the detector, {@link #onFrame(long, long)} before dispatching the offsets of a frame,
+ * {@link #onScreenWidthChanged(int)} before setting the screen width, and
+ * {@link #onOffsetsChanged(float)} with each offset produced by the detector. The calls may
+ * come from the touch and the render threads: the owner holds the lock of the recorder from
+ * the record of an input until the detector has processed it, so that the trace keeps the
+ * offsets after the input producing them, in the order the detector saw the inputs.
+ * <p/>
+ * Only the first pointer is recorded, the secondary pointers are left out of the trace.
+ */
+public class TouchRecorder {
+
+    private static final String TAG = "TouchRecorder";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DataOutputStream mOut;
+    private long mRecords;
+    private boolean mFailed = false;
+
+    /**
+     * Writes the header of the trace, from the current state of the detector.
+     */
+    public TouchRecorder(OutputStream out, OffsetsDetector detector) throws IOException {
+        mOut = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        mOut.writeInt(TouchTrace.MAGIC);
+        mOut.writeShort(TouchTrace.VERSION);
+        mOut.writeInt(detector.getScreenWidth());
+        mOut.writeInt(detector.getScreens());
+        mOut.writeFloat(detector.getPageGeometry().getOverscroll());
+        mOut.writeFloat(detector.getPageGeometry().getRubberBand());
+        mOut.writeFloat(detector.getTouchOffsetX());
+        final TouchPredictor predictor = detector.getTouchPredictor();
+        mOut.writeFloat(predictor != null ? predictor.getDamping() : -1f);
+    }
+
+    public synchronized void onTouchEvent(MotionEvent event) {
+        final int action = event.getAction() & MotionEvent.ACTION_MASK;
+        if (mFailed || action == MotionEvent.ACTION_POINTER_DOWN || action == MotionEvent.ACTION_POINTER_UP) {
+            return;
+        }
+        try {
+            final long downTime = event.getDownTime();
+            final int historySize = event.getHistorySize();
+            mOut.writeByte(TouchTrace.RECORD_EVENT);
+            mOut.writeByte(action);
+            mOut.writeLong(downTime);
+            mOut.writeShort(historySize + 1);
+            for (int h = 0; h < historySize; h++) {
+                mOut.writeInt((int) (event.getHistoricalEventTime(h) - downTime));
+                mOut.writeFloat(event.getHistoricalX(0, h));
+                mOut.writeFloat(event.getHistoricalY(0, h));
+            }
+            mOut.writeInt((int) (event.getEventTime() - downTime));
+            mOut.writeFloat(event.getX(0));
+            mOut.writeFloat(event.getY(0));
+            mRecords++;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    public void onFrame(long frameTimeNanos) {
+        onFrame(frameTimeNanos, frameTimeNanos);
+    }
+
+    /**
+     * @param presentationTimeNanos time passed to
+     *                              {@link OffsetsDetector#dispatchPendingOffsets(long)}
+     */
+    public synchronized void onFrame(long frameTimeNanos, long presentationTimeNanos) {
+        if (mFailed) {
+            return;
+        }
+        try {
+            mOut.writeByte(TouchTrace.RECORD_FRAME);
+            mOut.writeLong(frameTimeNanos);
+            mOut.writeLong(presentationTimeNanos);
+            mRecords++;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    public synchronized void onScreenWidthChanged(int width) {
+        if (mFailed) {
+            return;
+        }
+        try {
+            mOut.writeByte(TouchTrace.RECORD_SCREEN_WIDTH);
+            mOut.writeInt(width);
+            mRecords++;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    public synchronized void onOffsetsChanged(float xOffset) {
+        if (mFailed) {
+            return;
+        }
+        try {
+            mOut.writeByte(TouchTrace.RECORD_OFFSET);
+            mOut.writeLong(System.nanoTime());
+            mOut.writeFloat(xOffset);
+            mRecords++;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    public synchronized void onVisibilityChanged(boolean visible) {
+        if (mFailed) {
+            return;
+        }
+        try {
+            mOut.writeByte(TouchTrace.RECORD_VISIBILITY);
+            mOut.writeBoolean(visible);
+            mRecords++;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    public synchronized long getRecordCount() {
+        return mRecords;
+    }
+
+    /**
+     * Flushes and closes the trace, the recorder ignores the calls made afterwards.
+     */
+    public synchronized void close() {
+        try {
+            mOut.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Exception while closing the trace.", e);
+        }
+        mFailed = true;
+    }
+
+    private void fail(IOException e) {
+        // a partial trace is still readable, stop recording rather than throwing at the caller
+        Log.e(TAG, "Exception while writing the trace, recording stopped.", e);
+        mFailed = true;
+        try {
+            mOut.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package fr.ravenfeld.example.livewallpaper.trace;
+
+import android.view.MotionEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+
+import fr.ravenfeld.example.livewallpaper.frame.LatencyHistogram;
+import fr.ravenfeld.example.livewallpaper.gesture.OffsetsDetector;
+import fr.ravenfeld.example.livewallpaper.gesture.TouchPredictor;
+
+/**
+ * Pushes a trace written by {@link TouchRecorder} through a new {@link OffsetsDetector}.
+ * <p/>
+ * The detector is driven the way the engine drives it: the events in order, and at each frame
+ * the pending offsets followed by the settling fling. The replay only depends on the times
+ * stored in the trace, so it gives the same offsets on any machine. Each offset is compared
+ * with the recorded one, and the time spent in {@link OffsetsDetector#onTouchEvent} is
+ * measured for each event.
+ * <p/>
+ * A trace can also be replayed with another {@link TouchPredictor} than the one it was
+ * recorded with, to compare the prediction errors of several settings on the same swipes.
+ */
+public class TouchReplayer {
+
+    private final byte[] mTrace;
+
+    // offsets produced by the detector and not compared yet
+    private float[] mOutputs = new float[16];
+    private int mOutputHead;
+    private int mOutputTail;
+
+    /**
+     * Reads the whole trace, so that the replay does no I/O.
+     */
+    public TouchReplayer(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        mTrace = out.toByteArray();
+    }
+
+    public Result replay() throws IOException {
+        return replay(0f);
+    }
+
+    /**
+     * @param tolerance largest difference between a replayed and a recorded offset still
+     *                  counted as equivalent, 0 for identical offsets
+     */
+    public Result replay(float tolerance) throws IOException {
+        return replay(tolerance, true, null);
+    }
+
+    /**
+     * Replays the trace with the given predictor instead of the recorded one, the offsets
+     * then only match the recorded ones if the predictions do.
+     *
+     * @param predictor null to replay without prediction
+     */
+    public Result replay(float tolerance, TouchPredictor predictor) throws IOException {
+        return replay(tolerance, false, predictor);
+    }
+
+    private Result replay(float tolerance, boolean recordedPredictor, TouchPredictor predictor) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(mTrace));
+        if (in.readInt() != TouchTrace.MAGIC) {
+            throw new IOException("Not a touch trace");
+        }
+        final short version = in.readShort();
+        if (version != TouchTrace.VERSION && version != TouchTrace.VERSION_2 && version != TouchTrace.VERSION_1) {
+            throw new IOException("Unsupported touch trace version: " + version);
+        }
+
+        final OffsetsDetector detector = new OffsetsDetector(null, new OffsetsDetector.OnOffsetsListener() {
+            @Override
+            public void onOffsetsChanged(float xOffset, float yOffset, float xOffsetStep, float yOffsetStep) {
+                pushOutput(xOffset);
+            }
+        });
+        final int screenWidth = in.readInt();
+        detector.setScreens(in.readInt());
+        detector.setOverscroll(in.readFloat(), in.readFloat());
+        detector.setTouchOffsetX(in.readFloat());
+        final float damping = version == TouchTrace.VERSION_1 ? -1f : in.readFloat();
+        if (recordedPredictor) {
+            predictor = damping >= 0 ? new TouchPredictor(damping) : null;
+        }
+        detector.setTouchPredictor(predictor);
+        detector.setScreenWidth(screenWidth);
+        // the offset notified by the setup is not part of the trace
+        mOutputHead = mOutputTail = 0;
+
+        final Result result = new Result(predictor);
+        try {
+            while (true) {
+                final byte record;
+                try {
+                    record = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                switch (record) {
+                    case TouchTrace.RECORD_EVENT:
+                        final MotionEvent event = readEvent(in);
+                        final long start = System.nanoTime();
+                        detector.onTouchEvent(event);
+                        result.mEventLatency.record(System.nanoTime() - start);
+                        result.mEvents++;
+                        event.recycle();
+                        break;
+                    case TouchTrace.RECORD_FRAME:
+                        final long frameTimeNanos = in.readLong();
+                        final long presentationTimeNanos = version == TouchTrace.VERSION_1 ? frameTimeNanos : in.readLong();
+                        detector.dispatchPendingOffsets(presentationTimeNanos);
+                        if (detector.computeScrollOffset(frameTimeNanos)) {
+                            pushOutput(detector.getOffsetXCurrent());
+                        }
+                        result.mFrames++;
+                        break;
+                    case TouchTrace.RECORD_OFFSET:
+                        in.readLong();
+                        final float expected = in.readFloat();
+                        if (mOutputHead == mOutputTail) {
+                            // recorded but not produced
+                            result.mMismatches++;
+                        } else {
+                            result.compare(expected, mOutputs[mOutputHead++], tolerance);
+                        }
+                        break;
+                    case TouchTrace.RECORD_VISIBILITY:
+                        detector.onVisibilityChanged(in.readBoolean());
+                        break;
+                    case TouchTrace.RECORD_SCREEN_WIDTH:
+                        // the offset notified by the new width is recorded after this record
+                        detector.setScreenWidth(in.readInt());
+                        break;
+                    default:
+                        throw new IOException("Unknown record " + record + " after " + result.mEvents + " events");
+                }
+            }
+        } finally {
+            detector.onDestroy();
+        }
+        // produced but not recorded
+        result.mMismatches += mOutputTail - mOutputHead;
+        return result;
+    }
+
+    private static MotionEvent readEvent(DataInputStream in) throws IOException {
+        final int action = in.readByte();
+        final long downTime = in.readLong();
+        final int samples = in.readShort();
+        MotionEvent event = null;
+        for (int i = 0; i < samples; i++) {
+            final long eventTime = downTime + in.readInt();
+            final float x = in.readFloat();
+            final float y = in.readFloat();
+            if (event == null) {
+                event = MotionEvent.obtain(downTime, eventTime, action, x, y, 0);
+            } else {
+                event.addBatch(eventTime, x, y, 1f, 1f, 0);
+            }
+        }
+        if (event == null) {
+            throw new IOException("Event without sample");
+        }
+        return event;
+    }
+
+    private void pushOutput(float xOffset) {
+        if (mOutputTail == mOutputs.length) {
+            if (mOutputHead > 0) {
+                System.arraycopy(mOutputs, mOutputHead, mOutputs, 0, mOutputTail - mOutputHead);
+                mOutputTail -= mOutputHead;
+                mOutputHead = 0;
+            } else {
+                // Arrays.copyOf needs API 9
+                final float[] outputs = new float[mOutputs.length * 2];
+                System.arraycopy(mOutputs, 0, outputs, 0, mOutputTail);
+                mOutputs = outputs;
+            }
+        }
+        mOutputs[mOutputTail++] = xOffset;
+    }
+
+    public static class Result {
+
+        private final LatencyHistogram mEventLatency = new LatencyHistogram(1000L, 1000);
+        private final TouchPredictor mPredictor;
+        private long mEvents;
+        private long mFrames;
+        private long mOffsets;
+        private long mMismatches;
+        private float mMaxError;
+
+        private Result(TouchPredictor predictor) {
+            mPredictor = predictor;
+        }
+
+        private void compare(float expected, float actual, float tolerance) {
+            final float error = Math.abs(actual - expected);
+            mOffsets++;
+            if (error > mMaxError) {
+                mMaxError = error;
+            }
+            if (error > tolerance) {
+                mMismatches++;
+            }
+        }
+
+        /**
+         * @return time spent by the detector in each event, in buckets of one microsecond
+         */
+        public LatencyHistogram getEventLatency() {
+            return mEventLatency;
+        }
+
+        public long getEventCount() {
+            return mEvents;
+        }
+
+        public long getFrameCount() {
+            return mFrames;
+        }
+
+        public long getOffsetCount() {
+            return mOffsets;
+        }
+
+        /**
+         * @return number of offsets differing from the recorded ones, missing or in excess
+         */
+        public long getMismatchCount() {
+            return mMismatches;
+        }
+
+        public float getMaxError() {
+            return mMaxError;
+        }
+
+        /**
+         * @return the predictor used by the replay, with its prediction errors, or null
+         */
+        public TouchPredictor getTouchPredictor() {
+            return mPredictor;
+        }
+
+        /**
+         * @return true if the replay produced the recorded offsets
+         */
+        public boolean isEquivalent() {
+            return mMismatches == 0;
+        }
+
+        public void dump(PrintWriter writer) {
+            writer.printf("events=%d frames=%d offsets=%d mismatches=%d maxError=%g%n",
+                    mEvents, mFrames, mOffsets, mMismatches, mMaxError);
+            writer.printf("onTouchEvent: mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus%n",
+                    mEventLatency.getMeanNanos() / 1e3, mEventLatency.getPercentileNanos(50) / 1e3,
+                    mEventLatency.getPercentileNanos(99) / 1e3, mEventLatency.getMaxNanos() / 1e3);
+            if (mPredictor != null) {
+                mPredictor.dump(writer, "");
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package fr.ravenfeld.example.livewallpaper.trace;
+
+/**
+ * Binary format of the touch traces written by {@link TouchRecorder} and read by
+ * {@link TouchReplayer}, big endian as written by a {@link java.io.DataOutputStream}.
+ * <pre>
+ * header      int magic, short version, int screen width, int screens, float overscroll,
+ *             float rubber band, float touch offset,
+ *             float prediction damping                            version 2, -1 without prediction
+ * event       byte EVENT, byte action, long down time, short samples,
+ *             samples * (int time since down, float x, float y)   times in milliseconds
+ * frame       byte FRAME, long frame time,                        nanoseconds
+ *             long presentation time                              version 2
+ * offset      byte OFFSET, long time, float x offset              nanoseconds
+ * visibility  byte VISIBILITY, boolean visible
+ * width       byte SCREEN_WIDTH, int screen width                 version 3
+ * </pre>
+ * The trace ends with the stream.
+ */
+public final class TouchTrace {
+
+    static final int MAGIC = 0x4c575454;
+    static final short VERSION = 3;
+    // no screen width record
+    static final short VERSION_2 = 2;
+    // no prediction damping nor presentation time
+    static final short VERSION_1 = 1;
+
+    static final byte RECORD_EVENT = 1;
+    static final byte RECORD_FRAME = 2;
+    static final byte RECORD_OFFSET = 3;
+    static final byte RECORD_VISIBILITY = 4;
+    static final byte RECORD_SCREEN_WIDTH = 5;
+
+    private TouchTrace() {
+    }
+}
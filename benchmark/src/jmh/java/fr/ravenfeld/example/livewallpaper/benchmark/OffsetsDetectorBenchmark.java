@@ -0,0 +1,90 @@
+package fr.ravenfeld.example.livewallpaper.benchmark;
+
+import android.view.MotionEvent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import fr.ravenfeld.example.livewallpaper.gesture.OffsetsDetector;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OffsetsDetectorBenchmark {
+
+    private static final int SCREEN_WIDTH = 1080;
+    private static final int MOVES = 30;
+    private static final long FRAME_NANOS = 16666667L;
+
+    private OffsetsDetector mDetector;
+    private float mLastOffset;
+
+    // left swipe followed by a right swipe, so the detector ends where it started
+    private MotionEvent[] mSwipes;
+
+    // starts a gesture from the current page before each fling
+    private MotionEvent mDown;
+
+    @Setup
+    public void setUp() {
+        mDetector = new OffsetsDetector(null, new OffsetsDetector.OnOffsetsListener() {
+            @Override
+            public void onOffsetsChanged(float xOffset, float yOffset, float xOffsetStep, float yOffsetStep) {
+                mLastOffset = xOffset;
+            }
+        });
+        mDetector.setScreenWidth(SCREEN_WIDTH);
+
+        mSwipes = new MotionEvent[2 * (MOVES + 2)];
+        int i = 0;
+        i = swipe(mSwipes, i, 0L, 900f, 200f);
+        swipe(mSwipes, i, 1000L, 200f, 900f);
+        mDown = MotionEvent.obtain(2000L, 2000L, MotionEvent.ACTION_DOWN, 540f, 500f, 0);
+    }
+
+    private static int swipe(MotionEvent[] events, int i, long downTime, float fromX, float toX) {
+        events[i++] = MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_DOWN, fromX, 500f, 0);
+        for (int move = 1; move <= MOVES; move++) {
+            final float x = fromX + (toX - fromX) * move / MOVES;
+            events[i++] = MotionEvent.obtain(downTime, downTime + move * 10, MotionEvent.ACTION_MOVE, x, 500f, 0);
+        }
+        events[i++] = MotionEvent.obtain(downTime, downTime + (MOVES + 1) * 10, MotionEvent.ACTION_UP, toX, 500f, 0);
+        return i;
+    }
+
+    @Benchmark
+    public float swipeStream() {
+        // 10 ms between the events, about one frame every other event at 60 Hz
+        for (int i = 0; i < mSwipes.length; i++) {
+            mDetector.onTouchEvent(mSwipes[i]);
+            if ((i & 1) == 1) {
+                mDetector.dispatchPendingOffsets();
+            }
+        }
+        mDetector.dispatchPendingOffsets();
+        return mLastOffset;
+    }
+
+    @Benchmark
+    public float flingAndSnap() {
+        long now = System.nanoTime();
+        mDetector.onTouchEvent(mDown);
+        mDetector.onFling(-3000f);
+        while (mDetector.computeScrollOffset(now)) {
+            now += FRAME_NANOS;
+        }
+        mDetector.onTouchEvent(mDown);
+        mDetector.onFling(3000f);
+        while (mDetector.computeScrollOffset(now)) {
+            now += FRAME_NANOS;
+        }
+        return mDetector.getOffsetXCurrent();
+    }
+}
@@ -0,0 +1,102 @@
+package fr.ravenfeld.example.livewallpaper.benchmark;
+
+import android.graphics.Canvas;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import fr.ravenfeld.example.livewallpaper.Scene;
+import fr.ravenfeld.example.livewallpaper.scene.CanvasRenderTarget;
+import fr.ravenfeld.example.livewallpaper.scene.Layer;
+import fr.ravenfeld.example.livewallpaper.scene.RecordingRenderTarget;
+import fr.ravenfeld.example.livewallpaper.scene.RingLayer;
+import fr.ravenfeld.example.livewallpaper.scene.SceneModel;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SceneBenchmark {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    // static parallax layers added to the default ones, each should only cost a blit
+    @Param({"0", "4", "8"})
+    public int extraLayers;
+
+    private Scene mScene;
+    private Canvas mCanvas;
+    private RecordingRenderTarget mRecorder;
+    private CanvasRenderTarget mCanvasTarget;
+    private float mXOffset;
+
+    @Setup
+    public void setUp() {
+        mScene = new Scene(new SceneModel(new SceneModel.LayerFactory() {
+            @Override
+            public void onCreateLayers(ArrayList<Layer> layers) {
+                Scene.DEFAULT_LAYERS.onCreateLayers(layers);
+                for (int i = 0; i < extraLayers; i++) {
+                    layers.add(new RingLayer(0.25f * (i + 1), 0.1f * (i + 1), 0xff5e736d, 0xffa2bd3a));
+                }
+            }
+        }));
+        mScene.updateSize(WIDTH, HEIGHT);
+        mScene.onOffsetsChanged(0.5f, 0.5f, 0.25f, 1f, 0, 0);
+        mScene.update();
+        mCanvas = new Canvas(WIDTH, HEIGHT);
+        mRecorder = new RecordingRenderTarget(WIDTH, HEIGHT);
+        mCanvasTarget = new CanvasRenderTarget(mCanvas);
+        // the draw calls and the overdraw of the scene are checked by SceneDrawTest
+        mScene.draw(mRecorder);
+    }
+
+    @Benchmark
+    public void update() {
+        mScene.update();
+    }
+
+    @Benchmark
+    public void draw() {
+        mScene.draw(mCanvas);
+    }
+
+    @Benchmark
+    public void updateAndDraw() {
+        mScene.update();
+        mScene.draw(mCanvas);
+    }
+
+    @Benchmark
+    public void scrollUpdateAndDraw() {
+        mXOffset += 0.01f;
+        if (mXOffset > 1f) {
+            mXOffset = 0f;
+        }
+        mScene.onOffsetsChanged(mXOffset, 0.5f, 0.25f, 1f, 0, 0);
+        mScene.update();
+        mScene.draw(mCanvas);
+    }
+
+    @Benchmark
+    public int recordUpdateAndDraw() {
+        mRecorder.reset();
+        mScene.update();
+        mScene.draw(mRecorder);
+        return mRecorder.getDrawCallCount();
+    }
+
+    @Benchmark
+    public void replayRecording() {
+        mRecorder.replay(mCanvasTarget);
+    }
+}
@@ -0,0 +1,109 @@
+package fr.ravenfeld.example.livewallpaper.benchmark;
+
+import android.graphics.Canvas;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import fr.ravenfeld.example.livewallpaper.scene.CanvasRenderTarget;
+import fr.ravenfeld.example.livewallpaper.scene.DrawStats;
+import fr.ravenfeld.example.livewallpaper.scene.RecordingRenderTarget;
+import fr.ravenfeld.example.livewallpaper.scene.SpriteBatchLayer;
+
+/**
+ * Cost of a frame of a {@link SpriteBatchLayer} against its number of sprites: the update is
+ * expected to grow linearly, the number of draw calls to stay at one per color.
+ * <p/>
+ * The parallax sets the width of the field: half a screen more than the screen, or four screens
+ * as for a panorama scrolled over the virtual width of the pages, where most of the sprites are
+ * culled.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SpriteBatchBenchmark {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final int[] PALETTE = {0xffa2bd3a, 0xff5e736d, 0xff8aa8a0, 0xffffffff};
+    private static final long FRAME_NANOS = 16666667L;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int sprites;
+
+    @Param({"-0.5", "-3"})
+    public float parallax;
+
+    private SpriteBatchLayer mLayer;
+    private CanvasRenderTarget mCanvasTarget;
+    private RecordingRenderTarget mRecorder;
+    private final DrawStats mDrawStats = new DrawStats();
+    private long mTimeNanos;
+    private float mXOffset;
+
+    @Setup
+    public void setUp() {
+        mLayer = SpriteBatchLayer.createRandom(parallax, PALETTE, 4f, sprites, 0.05f, 42);
+        mLayer.setSize(WIDTH, HEIGHT);
+        mLayer.update(0);
+        mCanvasTarget = new CanvasRenderTarget(new Canvas(WIDTH, HEIGHT));
+        mRecorder = new RecordingRenderTarget(WIDTH, HEIGHT);
+
+        mLayer.draw(mRecorder, 0.5f, true, mDrawStats);
+        if (mRecorder.getDrawCallCount() > PALETTE.length) {
+            throw new IllegalStateException("Expected at most " + PALETTE.length + " draw calls, recorded "
+                    + mRecorder.getDrawCallCount());
+        }
+        if (mDrawStats.getDrawnCount() + mDrawStats.getCulledCount() != sprites) {
+            throw new IllegalStateException("Expected each sprite to be drawn or culled, drawn "
+                    + mDrawStats.getDrawnCount() + " culled " + mDrawStats.getCulledCount() + " of " + sprites);
+        }
+        // half a screen of parallax only adds the columns the viewport crosses at the middle
+        // offset, a field of two screens or more has columns out of the viewport at any offset
+        if (Math.abs(parallax) >= 1 && mDrawStats.getCulledCount() == 0) {
+            throw new IllegalStateException("Expected the sprites out of the viewport to be culled, drawn "
+                    + mDrawStats.getDrawnCount() + " culled " + mDrawStats.getCulledCount());
+        }
+    }
+
+    @Benchmark
+    public boolean update() {
+        mTimeNanos += FRAME_NANOS;
+        return mLayer.update(mTimeNanos);
+    }
+
+    @Benchmark
+    public void updateAndDraw() {
+        mTimeNanos += FRAME_NANOS;
+        mLayer.update(mTimeNanos);
+        mLayer.draw(mCanvasTarget, 0.5f, true);
+    }
+
+    @Benchmark
+    public void scrollUpdateAndDraw() {
+        mXOffset += 0.01f;
+        if (mXOffset > 1f) {
+            mXOffset = 0f;
+        }
+        mTimeNanos += FRAME_NANOS;
+        mLayer.update(mTimeNanos);
+        mLayer.draw(mCanvasTarget, mXOffset, true);
+    }
+
+    @Benchmark
+    public int recordUpdateAndDraw() {
+        mTimeNanos += FRAME_NANOS;
+        mRecorder.reset();
+        mLayer.update(mTimeNanos);
+        mLayer.draw(mRecorder, 0.5f, true);
+        return mRecorder.getDrawCallCount();
+    }
+}
@@ -0,0 +1,117 @@
+package fr.ravenfeld.example.livewallpaper.benchmark;
+
+import android.view.MotionEvent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import fr.ravenfeld.example.livewallpaper.gesture.OffsetsDetector;
+import fr.ravenfeld.example.livewallpaper.gesture.TouchPredictor;
+import fr.ravenfeld.example.livewallpaper.trace.TouchRecorder;
+import fr.ravenfeld.example.livewallpaper.trace.TouchReplayer;
+
+/**
+ * Replays a recorded trace of swipes, the setup fails if the replay does not give back the
+ * recorded offsets. Traces recorded on a device can be replayed the same way.
+ * <p/>
+ * {@link #replayWithPrediction()} replays the trace, recorded without prediction, through a
+ * {@link TouchPredictor}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TouchReplayBenchmark {
+
+    private static final int SCREEN_WIDTH = 1080;
+    private static final int ROTATED_SCREEN_WIDTH = 1920;
+    private static final int SWIPES = 8;
+    private static final int MOVES = 20;
+    // 120 Hz touch panel, 60 Hz display
+    private static final long EVENT_MILLIS = 8;
+    private static final long FRAME_NANOS = 16666667L;
+    private static final int SETTLE_FRAMES = 60;
+
+    private TouchReplayer mReplayer;
+
+    @Setup
+    public void setUp() throws IOException {
+        ByteArrayOutputStream trace = new ByteArrayOutputStream();
+        final TouchRecorder[] recorder = new TouchRecorder[1];
+        OffsetsDetector detector = new OffsetsDetector(null, new OffsetsDetector.OnOffsetsListener() {
+            @Override
+            public void onOffsetsChanged(float xOffset, float yOffset, float xOffsetStep, float yOffsetStep) {
+                if (recorder[0] != null) {
+                    recorder[0].onOffsetsChanged(xOffset);
+                }
+            }
+        });
+        detector.setScreenWidth(SCREEN_WIDTH);
+        recorder[0] = new TouchRecorder(trace, detector);
+
+        long time = 0;
+        for (int swipe = 0; swipe < SWIPES; swipe++) {
+            if (swipe == SWIPES / 2) {
+                // rotated halfway through the trace
+                recorder[0].onScreenWidthChanged(ROTATED_SCREEN_WIDTH);
+                detector.setScreenWidth(ROTATED_SCREEN_WIDTH);
+            }
+            final float fromX = (swipe & 1) == 0 ? 900f : 200f;
+            final float toX = 1100f - fromX;
+            final long downTime = time;
+            for (int move = 0; move <= MOVES + 1; move++) {
+                final int action = move == 0 ? MotionEvent.ACTION_DOWN
+                        : (move == MOVES + 1 ? MotionEvent.ACTION_UP : MotionEvent.ACTION_MOVE);
+                final float x = fromX + (toX - fromX) * Math.min(move, MOVES) / MOVES;
+                MotionEvent event = MotionEvent.obtain(downTime, time, action, x, 500f, 0);
+                recorder[0].onTouchEvent(event);
+                detector.onTouchEvent(event);
+                if ((move & 1) == 1) {
+                    frame(detector, recorder[0], time * 1000000L);
+                }
+                time += EVENT_MILLIS;
+            }
+            for (int i = 0; i < SETTLE_FRAMES; i++) {
+                frame(detector, recorder[0], time * 1000000L + i * FRAME_NANOS);
+            }
+            time += SETTLE_FRAMES * FRAME_NANOS / 1000000L;
+        }
+        recorder[0].close();
+
+        mReplayer = new TouchReplayer(new ByteArrayInputStream(trace.toByteArray()));
+        TouchReplayer.Result result = mReplayer.replay();
+        if (!result.isEquivalent()) {
+            throw new IllegalStateException("Replay differs from the recorded trace: "
+                    + result.getMismatchCount() + " mismatches, max error " + result.getMaxError());
+        }
+    }
+
+    // what the engine does at each frame
+    private static void frame(OffsetsDetector detector, TouchRecorder recorder, long frameTimeNanos) {
+        final long presentationTimeNanos = frameTimeNanos + FRAME_NANOS;
+        recorder.onFrame(frameTimeNanos, presentationTimeNanos);
+        detector.dispatchPendingOffsets(presentationTimeNanos);
+        if (detector.computeScrollOffset(frameTimeNanos)) {
+            recorder.onOffsetsChanged(detector.getOffsetXCurrent());
+        }
+    }
+
+    @Benchmark
+    public long replay() throws IOException {
+        return mReplayer.replay().getOffsetCount();
+    }
+
+    @Benchmark
+    public long replayWithPrediction() throws IOException {
+        return mReplayer.replay(Float.MAX_VALUE, new TouchPredictor()).getOffsetCount();
+    }
+}
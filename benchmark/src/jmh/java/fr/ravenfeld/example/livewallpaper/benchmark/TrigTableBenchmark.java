@@ -0,0 +1,71 @@
+package fr.ravenfeld.example.livewallpaper.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import fr.ravenfeld.example.livewallpaper.scene.TrigTable;
+
+/**
+ * Orbit position of N objects, with java.lang.Math and with the lookup table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TrigTableBenchmark {
+
+    @Param({"1", "16", "256", "4096"})
+    public int objects;
+
+    private final TrigTable mTable = TrigTable.getDefault();
+    private final int mPhaseStep = TrigTable.degreesToPhase(1.0);
+
+    private float[] mAngles;
+    private int[] mPhases;
+    private float[] mXs;
+    private float[] mYs;
+
+    @Setup
+    public void setUp() {
+        mAngles = new float[objects];
+        mPhases = new int[objects];
+        mXs = new float[objects];
+        mYs = new float[objects];
+        for (int i = 0; i < objects; i++) {
+            mAngles[i] = 360f * i / objects;
+            mPhases[i] = TrigTable.degreesToPhase(mAngles[i]);
+        }
+    }
+
+    @Benchmark
+    public float[] math() {
+        for (int i = 0; i < objects; i++) {
+            float angle = mAngles[i] + 1.0f;
+            if (angle > 360f) {
+                angle -= 360f;
+            }
+            mAngles[i] = angle;
+            mXs[i] = (float) (100 * Math.cos(Math.toRadians(angle)));
+            mYs[i] = (float) (100 * Math.sin(Math.toRadians(angle)));
+        }
+        return mXs;
+    }
+
+    @Benchmark
+    public float[] table() {
+        for (int i = 0; i < objects; i++) {
+            final int phase = mPhases[i] + mPhaseStep;
+            mPhases[i] = phase;
+            mXs[i] = 100 * mTable.cos(phase);
+            mYs[i] = 100 * mTable.sin(phase);
+        }
+        return mXs;
+    }
+}
@@ -0,0 +1,7 @@
+package android.content;
+
+/**
+ * Stand-in for the Android Context, only used to be passed as null.
+ */
+public abstract class Context {
+}
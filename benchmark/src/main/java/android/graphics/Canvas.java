@@ -0,0 +1,83 @@
+package android.graphics;
+
+/**
+ * Stand-in for the Android Canvas: draw calls are only counted.
+ */
+public class Canvas {
+
+    private int mWidth;
+    private int mHeight;
+    private long mDrawCalls;
+
+    public Canvas() {
+    }
+
+    public Canvas(Bitmap bitmap) {
+        setBitmap(bitmap);
+    }
+
+    public Canvas(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    public void setBitmap(Bitmap bitmap) {
+        if (bitmap != null) {
+            mWidth = bitmap.getWidth();
+            mHeight = bitmap.getHeight();
+        }
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public long getDrawCalls() {
+        return mDrawCalls;
+    }
+
+    public int save() {
+        return 1;
+    }
+
+    public void restore() {
+    }
+
+    public void translate(float dx, float dy) {
+    }
+
+    public void drawPaint(Paint paint) {
+        mDrawCalls++;
+    }
+
+    public void drawColor(int color) {
+        mDrawCalls++;
+    }
+
+    public void drawCircle(float cx, float cy, float radius, Paint paint) {
+        mDrawCalls++;
+    }
+
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        mDrawCalls++;
+    }
+
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        if (bitmap.isRecycled()) {
+            throw new RuntimeException("Canvas: trying to use a recycled bitmap " + bitmap);
+        }
+        mDrawCalls++;
+    }
+
+    public void drawPoints(float[] pts, int offset, int count, Paint paint) {
+        mDrawCalls++;
+    }
+
+    public void drawLines(float[] pts, int offset, int count, Paint paint) {
+        mDrawCalls++;
+    }
+}
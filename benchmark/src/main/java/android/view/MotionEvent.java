@@ -0,0 +1,123 @@
+package android.view;
+
+import java.util.Arrays;
+
+/**
+ * Stand-in for the Android MotionEvent, single pointer, with batched historical samples.
+ */
+public final class MotionEvent {
+
+    public static final int ACTION_MASK = 0xff;
+    public static final int ACTION_DOWN = 0;
+    public static final int ACTION_UP = 1;
+    public static final int ACTION_MOVE = 2;
+    public static final int ACTION_CANCEL = 3;
+    public static final int ACTION_POINTER_DOWN = 5;
+    public static final int ACTION_POINTER_UP = 6;
+
+    private long mDownTime;
+    private int mAction;
+    // samples, the last one is the current sample and the others are historical
+    private int mSampleCount;
+    private long[] mEventTimes = new long[4];
+    private float[] mXs = new float[4];
+    private float[] mYs = new float[4];
+
+    private MotionEvent() {
+    }
+
+    public static MotionEvent obtain(long downTime, long eventTime, int action, float x, float y, int metaState) {
+        MotionEvent event = new MotionEvent();
+        event.mDownTime = downTime;
+        event.mAction = action;
+        event.addSample(eventTime, x, y);
+        return event;
+    }
+
+    public void addBatch(long eventTime, float x, float y, float pressure, float size, int metaState) {
+        addSample(eventTime, x, y);
+    }
+
+    private void addSample(long eventTime, float x, float y) {
+        if (mSampleCount == mXs.length) {
+            mEventTimes = Arrays.copyOf(mEventTimes, mSampleCount * 2);
+            mXs = Arrays.copyOf(mXs, mSampleCount * 2);
+            mYs = Arrays.copyOf(mYs, mSampleCount * 2);
+        }
+        mEventTimes[mSampleCount] = eventTime;
+        mXs[mSampleCount] = x;
+        mYs[mSampleCount] = y;
+        mSampleCount++;
+    }
+
+    public void recycle() {
+    }
+
+    public int getAction() {
+        return mAction;
+    }
+
+    public int getActionMasked() {
+        return mAction & ACTION_MASK;
+    }
+
+    public int getActionIndex() {
+        return 0;
+    }
+
+    public int getPointerCount() {
+        return 1;
+    }
+
+    public int getPointerId(int pointerIndex) {
+        return 0;
+    }
+
+    public long getDownTime() {
+        return mDownTime;
+    }
+
+    public long getEventTime() {
+        return mEventTimes[mSampleCount - 1];
+    }
+
+    public float getX() {
+        return mXs[mSampleCount - 1];
+    }
+
+    public float getY() {
+        return mYs[mSampleCount - 1];
+    }
+
+    public float getX(int pointerIndex) {
+        return getX();
+    }
+
+    public float getY(int pointerIndex) {
+        return getY();
+    }
+
+    public int getHistorySize() {
+        return mSampleCount - 1;
+    }
+
+    public long getHistoricalEventTime(int pos) {
+        return mEventTimes[pos];
+    }
+
+    public float getHistoricalX(int pos) {
+        return mXs[pos];
+    }
+
+    public float getHistoricalY(int pos) {
+        return mYs[pos];
+    }
+
+    public float getHistoricalX(int pointerIndex, int pos) {
+        return mXs[pos];
+    }
+
+    public float getHistoricalY(int pointerIndex, int pos) {
+        return mYs[pos];
+    }
+}
@@ -0,0 +1,13 @@
+package android.view;
+
+import android.graphics.Canvas;
+
+/**
+ * Stand-in for the Android SurfaceHolder, reduced to the canvas of the software rendering.
+ */
+public interface SurfaceHolder {
+
+    public Canvas lockCanvas();
+
+    public void unlockCanvasAndPost(Canvas canvas);
+}
@@ -0,0 +1,83 @@
+package android.view;
+
+/**
+ * Stand-in for the Android VelocityTracker: velocity between the oldest and the newest sample
+ * of the last 100 ms.
+ */
+public final class VelocityTracker {
+
+    private static final int HISTORY = 20;
+    private static final long HORIZON_MILLIS = 100;
+
+    private final long[] mTimes = new long[HISTORY];
+    private final float[] mXs = new float[HISTORY];
+    private int mIndex = -1;
+    private int mCount;
+    private float mXVelocity;
+
+    private VelocityTracker() {
+    }
+
+    public static VelocityTracker obtain() {
+        return new VelocityTracker();
+    }
+
+    public void recycle() {
+    }
+
+    public void clear() {
+        mIndex = -1;
+        mCount = 0;
+        mXVelocity = 0;
+    }
+
+    public void addMovement(MotionEvent event) {
+        final int history = event.getHistorySize();
+        for (int h = 0; h < history; h++) {
+            add(event.getHistoricalEventTime(h), event.getHistoricalX(h));
+        }
+        add(event.getEventTime(), event.getX());
+    }
+
+    private void add(long time, float x) {
+        mIndex = (mIndex + 1) % HISTORY;
+        mTimes[mIndex] = time;
+        mXs[mIndex] = x;
+        if (mCount < HISTORY) {
+            mCount++;
+        }
+    }
+
+    public void computeCurrentVelocity(int units) {
+        computeCurrentVelocity(units, Float.MAX_VALUE);
+    }
+
+    public void computeCurrentVelocity(int units, float maxVelocity) {
+        mXVelocity = 0;
+        if (mCount < 2) {
+            return;
+        }
+        final long newestTime = mTimes[mIndex];
+        int oldest = mIndex;
+        for (int i = 1; i < mCount; i++) {
+            final int index = (mIndex - i + HISTORY) % HISTORY;
+            if (newestTime - mTimes[index] > HORIZON_MILLIS) {
+                break;
+            }
+            oldest = index;
+        }
+        final long duration = newestTime - mTimes[oldest];
+        if (duration > 0) {
+            float velocity = (mXs[mIndex] - mXs[oldest]) * units / duration;
+            mXVelocity = Math.max(-maxVelocity, Math.min(maxVelocity, velocity));
+        }
+    }
+
+    public float getXVelocity() {
+        return mXVelocity;
+    }
+
+    public float getXVelocity(int id) {
+        return mXVelocity;
+    }
+}
@@ -0,0 +1,41 @@
+package android.view;
+
+import android.content.Context;
+
+/**
+ * Stand-in for the Android ViewConfiguration, with the values of a mdpi device.
+ */
+public class ViewConfiguration {
+
+    private static final int TOUCH_SLOP = 8;
+    private static final int MINIMUM_FLING_VELOCITY = 50;
+    private static final int MAXIMUM_FLING_VELOCITY = 8000;
+
+    public static ViewConfiguration get(Context context) {
+        return new ViewConfiguration();
+    }
+
+    public static int getTouchSlop() {
+        return TOUCH_SLOP;
+    }
+
+    public static int getMinimumFlingVelocity() {
+        return MINIMUM_FLING_VELOCITY;
+    }
+
+    public static int getMaximumFlingVelocity() {
+        return MAXIMUM_FLING_VELOCITY;
+    }
+
+    public int getScaledTouchSlop() {
+        return TOUCH_SLOP;
+    }
+
+    public int getScaledMinimumFlingVelocity() {
+        return MINIMUM_FLING_VELOCITY;
+    }
+
+    public int getScaledMaximumFlingVelocity() {
+        return MAXIMUM_FLING_VELOCITY;
+    }
+}
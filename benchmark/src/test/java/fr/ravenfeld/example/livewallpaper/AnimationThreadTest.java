@@ -0,0 +1,183 @@
+package fr.ravenfeld.example.livewallpaper;
+
+import android.graphics.Canvas;
+import android.view.SurfaceHolder;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.ravenfeld.example.livewallpaper.frame.FrameScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the render thread is quiescent without a surface: no frame is awaited, no canvas
+ * is locked and no CPU time is spent until the surface comes back.
+ */
+public class AnimationThreadTest {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final long TIMEOUT_MILLIS = 10000;
+    private static final long QUIESCENT_MILLIS = 300;
+    // CPU time allowed to the parked thread, for a spurious wakeup of its wait
+    private static final long MAX_QUIESCENT_CPU_NANOS = 2000000L;
+
+    private ThreadMXBean mThreadBean;
+    private CountingFrameScheduler mScheduler;
+    private CountingSurfaceHolder mSurfaceHolder;
+    private AnimationThread mThread;
+
+    @Before
+    public void setUp() {
+        mThreadBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(mThreadBean.isThreadCpuTimeSupported());
+        mThreadBean.setThreadCpuTimeEnabled(true);
+
+        final Scene scene = new Scene();
+        scene.updateSize(WIDTH, HEIGHT);
+        mScheduler = new CountingFrameScheduler();
+        mSurfaceHolder = new CountingSurfaceHolder();
+        mThread = new AnimationThread(mSurfaceHolder, scene, mScheduler);
+        mThread.start();
+        mThread.setSurfaceAvailable(true);
+        mThread.resumeThread();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (mThread != null) {
+            mThread.stopThread();
+            mThread.join(TIMEOUT_MILLIS);
+            assertTrue("the thread must stop", !mThread.isAlive());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void staysQuiescentWithoutSurface() throws InterruptedException {
+        awaitFrames(10);
+
+        mThread.setSurfaceAvailable(false);
+        awaitParked();
+        final long frames = mScheduler.getAwaitedFrames();
+        final long locks = mSurfaceHolder.getLockCount();
+        final long cpu = mThreadBean.getThreadCpuTime(mThread.getId());
+        Thread.sleep(QUIESCENT_MILLIS);
+        final long cpuSpent = mThreadBean.getThreadCpuTime(mThread.getId()) - cpu;
+
+        assertEquals("frames awaited without surface", frames, mScheduler.getAwaitedFrames());
+        assertEquals("canvases locked without surface", locks, mSurfaceHolder.getLockCount());
+        assertTrue("CPU time spent without surface: " + cpuSpent + "ns", cpuSpent <= MAX_QUIESCENT_CPU_NANOS);
+
+        // drawn again once the surface is back
+        mThread.setSurfaceAvailable(true);
+        awaitFrames(mScheduler.getAwaitedFrames() + 10);
+        assertTrue("canvases locked with the surface back", mSurfaceHolder.getLockCount() > locks);
+    }
+
+    @Test(timeout = 30000)
+    public void staysQuiescentWhilePaused() throws InterruptedException {
+        awaitFrames(10);
+
+        mThread.pauseThread();
+        awaitParked();
+        final long frames = mScheduler.getAwaitedFrames();
+        final long cpu = mThreadBean.getThreadCpuTime(mThread.getId());
+        Thread.sleep(QUIESCENT_MILLIS);
+        final long cpuSpent = mThreadBean.getThreadCpuTime(mThread.getId()) - cpu;
+
+        assertEquals("frames awaited while paused", frames, mScheduler.getAwaitedFrames());
+        assertTrue("CPU time spent while paused: " + cpuSpent + "ns", cpuSpent <= MAX_QUIESCENT_CPU_NANOS);
+        assertEquals(1, mThread.getFrameStats().getHideToQuiescent().getCount());
+    }
+
+    private void awaitFrames(long count) throws InterruptedException {
+        while (mScheduler.getAwaitedFrames() < count) {
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Waits until the render thread is parked on its lock, without timeout.
+     */
+    private void awaitParked() throws InterruptedException {
+        while (mThread.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Paces the frames at about 500 Hz and counts them.
+     */
+    private static class CountingFrameScheduler implements FrameScheduler {
+
+        private final AtomicLong mAwaitedFrames = new AtomicLong();
+        private volatile int mFrameRate = 500;
+
+        long getAwaitedFrames() {
+            return mAwaitedFrames.get();
+        }
+
+        @Override
+        public long awaitFrame() throws InterruptedException {
+            mAwaitedFrames.incrementAndGet();
+            Thread.sleep(1000 / mFrameRate);
+            return System.nanoTime();
+        }
+
+        @Override
+        public int getFrameRate() {
+            return mFrameRate;
+        }
+
+        @Override
+        public void setFrameRate(int fps) {
+            mFrameRate = fps;
+        }
+
+        @Override
+        public long getFrameIntervalNanos() {
+            return 1000000000L / mFrameRate;
+        }
+
+        @Override
+        public long getMissedFrames() {
+            return 0;
+        }
+
+        @Override
+        public void reset() {
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+
+    private static class CountingSurfaceHolder implements SurfaceHolder {
+
+        private final Canvas mCanvas = new Canvas(WIDTH, HEIGHT);
+        private final AtomicLong mLockCount = new AtomicLong();
+
+        long getLockCount() {
+            return mLockCount.get();
+        }
+
+        @Override
+        public Canvas lockCanvas() {
+            mLockCount.incrementAndGet();
+            return mCanvas;
+        }
+
+        @Override
+        public void unlockCanvasAndPost(Canvas canvas) {
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package fr.ravenfeld.example.livewallpaper;
+
+import android.graphics.Paint;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import fr.ravenfeld.example.livewallpaper.scene.Layer;
+import fr.ravenfeld.example.livewallpaper.scene.RecordingRenderTarget;
+import fr.ravenfeld.example.livewallpaper.scene.RingLayer;
+import fr.ravenfeld.example.livewallpaper.scene.SceneModel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the draw calls and the overdraw of the default scene, recorded by a
+ * {@link RecordingRenderTarget}.
+ */
+public class SceneDrawTest {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final double PIXELS = (double) WIDTH * HEIGHT;
+
+    // the ring is cached in a bitmap covering its radius and stroke, the orbit circle is a fill
+    private static final int RING_RADIUS = WIDTH / 3;
+    private static final int RING_BITMAP_SIZE = 2 * (RING_RADIUS + 3);
+    private static final float ORBIT_CIRCLE_RADIUS = RING_RADIUS * 0.2f;
+
+    @Test
+    public void defaultSceneDrawsThreeCalls() {
+        for (float xOffset = 0; xOffset <= 1; xOffset += 0.125f) {
+            final RecordingRenderTarget recorder = record(new Scene(), xOffset);
+            // the background fill, the blit of the ring and the orbit circle
+            assertEquals("xOffset=" + xOffset, 3, recorder.getDrawCallCount());
+        }
+    }
+
+    @Test
+    public void defaultSceneOverdraw() {
+        // the screen once, the whole ring bitmap and the orbit circle
+        final double expected = (PIXELS + (double) RING_BITMAP_SIZE * RING_BITMAP_SIZE
+                + Math.PI * ORBIT_CIRCLE_RADIUS * ORBIT_CIRCLE_RADIUS) / PIXELS;
+        assertEquals(expected, record(new Scene(), 0.5f).getOverdraw(), 1e-4);
+
+        // scrolled, the parts of the ring out of the screen are not counted
+        for (float xOffset = 0; xOffset <= 1; xOffset += 0.125f) {
+            final float overdraw = record(new Scene(), xOffset).getOverdraw();
+            assertTrue("xOffset=" + xOffset + " overdraw=" + overdraw, overdraw >= 1 && overdraw <= expected + 1e-4);
+        }
+    }
+
+    @Test
+    public void staticLayerCostsOneBlit() {
+        final Scene scene = new Scene(new SceneModel(new SceneModel.LayerFactory() {
+            @Override
+            public void onCreateLayers(ArrayList<Layer> layers) {
+                Scene.DEFAULT_LAYERS.onCreateLayers(layers);
+                layers.add(new RingLayer(0f, 1f / 3, 0xff5e736d, 0xffa2bd3a));
+            }
+        }));
+        final RecordingRenderTarget recorder = record(scene, 0.5f);
+        assertEquals(4, recorder.getDrawCallCount());
+        final double ringOverdraw = (double) RING_BITMAP_SIZE * RING_BITMAP_SIZE / PIXELS;
+        assertEquals(record(new Scene(), 0.5f).getOverdraw() + ringOverdraw, recorder.getOverdraw(), 1e-4);
+    }
+
+    @Test
+    public void sharedLayersAreDrawnAtTheTimeOfTheScene() {
+        final SceneModel model = new SceneModel(Scene.DEFAULT_LAYERS, 0);
+        final Scene first = new Scene(model);
+        final Scene second = new Scene(model);
+        first.updateSize(WIDTH, HEIGHT);
+        second.updateSize(WIDTH, HEIGHT);
+
+        // the second scene updates the shared layers between the update and the draw of the first
+        final long frameTimeNanos = 250000000L;
+        first.update(frameTimeNanos);
+        second.update(3 * frameTimeNanos);
+        final OrbitTarget drawn = new OrbitTarget();
+        first.draw(drawn);
+
+        final Scene alone = new Scene(new SceneModel(Scene.DEFAULT_LAYERS, 0));
+        alone.updateSize(WIDTH, HEIGHT);
+        alone.update(frameTimeNanos);
+        final OrbitTarget expected = new OrbitTarget();
+        alone.draw(expected);
+
+        assertEquals(expected.mCircleX, drawn.mCircleX, 0f);
+        assertEquals(expected.mCircleY, drawn.mCircleY, 0f);
+    }
+
+    private static RecordingRenderTarget record(Scene scene, float xOffset) {
+        scene.updateSize(WIDTH, HEIGHT);
+        scene.onOffsetsChanged(xOffset, 0.5f, 0.25f, 1f, 0, 0);
+        scene.update();
+        final RecordingRenderTarget recorder = new RecordingRenderTarget(WIDTH, HEIGHT);
+        scene.draw(recorder);
+        return recorder;
+    }
+
+    // keeps the center of the last circle drawn, the orbit circle of the default scene
+    private static class OrbitTarget extends RecordingRenderTarget {
+
+        float mCircleX;
+        float mCircleY;
+
+        OrbitTarget() {
+            super(WIDTH, HEIGHT);
+        }
+
+        @Override
+        public void drawCircle(float cx, float cy, float radius, Paint paint) {
+            super.drawCircle(cx, cy, radius, paint);
+            mCircleX = cx;
+            mCircleY = cy;
+        }
+    }
+}
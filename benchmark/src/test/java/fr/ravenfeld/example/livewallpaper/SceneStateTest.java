@@ -0,0 +1,137 @@
+package fr.ravenfeld.example.livewallpaper;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the sequence lock of {@link SceneState} with a writer and a reader running at once.
+ * <p/>
+ * The writer keeps the height at twice the width and the offset at the width divided by
+ * {@link #OFFSET_SCALE}, so a torn snapshot breaks one of these relations.
+ */
+public class SceneStateTest {
+
+    private static final int WRITES = 1000000;
+    private static final float OFFSET_SCALE = 1 << 20;
+
+    @Test
+    public void snapshotReportsChanges() {
+        final SceneState state = new SceneState();
+        assertTrue(state.snapshot());
+        assertFalse(state.snapshot());
+        state.setSize(10, 20);
+        assertTrue(state.snapshot());
+        assertEquals(10, state.getWidth());
+        assertEquals(20, state.getHeight());
+        assertFalse(state.snapshot());
+        state.setXOffset(0.25f);
+        assertTrue(state.snapshot());
+        assertEquals(0.25f, state.getXOffset(), 0f);
+    }
+
+    @Test(timeout = 60000)
+    public void readerNeverSeesATornState() throws Throwable {
+        final SceneState state = new SceneState();
+        state.setSize(0, 0);
+        state.setXOffset(0);
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        final Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                    int lastWidth = 0;
+                    long snapshots = 0;
+                    while (!done.get() || snapshots == 0) {
+                        if (!state.snapshot()) {
+                            continue;
+                        }
+                        snapshots++;
+                        final int width = state.getWidth();
+                        final int height = state.getHeight();
+                        final float xOffset = state.getXOffset();
+                        final String message = "width=" + width + " height=" + height + " xOffset=" + xOffset;
+                        assertEquals(message, 2 * width, height);
+                        // the offset is written after the size, it can lag behind by one write
+                        final int offsetWidth = (int) (xOffset * OFFSET_SCALE);
+                        assertTrue(message, offsetWidth == width || offsetWidth == width - 1);
+                        assertTrue(message, width >= lastWidth);
+                        lastWidth = width;
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }
+        }, "reader");
+
+        final Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                    for (int i = 1; i <= WRITES; i++) {
+                        state.setSize(i, 2 * i);
+                        state.setXOffset(i / OFFSET_SCALE);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }
+        }, "writer");
+
+        reader.start();
+        writer.start();
+        start.countDown();
+        writer.join();
+        done.set(true);
+        reader.join();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        // the reader thread is over, its snapshot is the latest state or an earlier one
+        state.snapshot();
+        assertEquals(WRITES, state.getWidth());
+        assertEquals(WRITES / OFFSET_SCALE, state.getXOffset(), 0f);
+    }
+
+    @Test(timeout = 60000)
+    public void writerNeverWaitsForTheReader() throws Throwable {
+        final SceneState state = new SceneState();
+        final int[] writes = new int[1];
+        final Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= WRITES; i++) {
+                    state.setSize(i, 2 * i);
+                    state.setXOffset(i / OFFSET_SCALE);
+                    writes[0] = i;
+                }
+            }
+        }, "writer");
+
+        // the test thread stalls inside a read section until the writer is over: a writer
+        // waiting for the readers would never finish
+        final int sequence = state.beginRead();
+        writer.start();
+        writer.join();
+        assertEquals(WRITES, writes[0]);
+
+        // the stalled read is detected and retried
+        assertTrue(state.retryRead(sequence));
+        assertTrue(state.snapshot());
+        assertEquals(WRITES, state.getWidth());
+        assertEquals(2 * WRITES, state.getHeight());
+        assertEquals(WRITES / OFFSET_SCALE, state.getXOffset(), 0f);
+    }
+}
@@ -0,0 +1,122 @@
+package fr.ravenfeld.example.livewallpaper.frame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Drives a {@link DeadlineFrameScheduler} with a fake clock, which only moves when the
+ * scheduler sleeps or when the test simulates the drawing of a frame.
+ */
+public class DeadlineFrameSchedulerTest {
+
+    private static final int FPS = 60;
+    private static final long INTERVAL = 1000000000L / FPS;
+    private static final long START_NANOS = 5000000000L;
+
+    private FakeTimeSource mClock;
+    private DeadlineFrameScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mClock = new FakeTimeSource(START_NANOS);
+        mScheduler = new DeadlineFrameScheduler(FPS, mClock);
+    }
+
+    @Test
+    public void deadlinesDoNotDrift() throws InterruptedException {
+        final Random random = new Random(42);
+        final long first = mScheduler.awaitFrame();
+        assertEquals(START_NANOS, first);
+        for (int frame = 1; frame <= 1000; frame++) {
+            // drawing takes any time below the interval
+            mClock.advance((long) (random.nextFloat() * (INTERVAL - 1)));
+            assertEquals("frame " + frame, first + frame * INTERVAL, mScheduler.awaitFrame());
+            assertEquals("frame " + frame, first + frame * INTERVAL, mClock.nanoTime());
+        }
+        assertEquals(0, mScheduler.getMissedFrames());
+    }
+
+    @Test
+    public void missedFramesAreSkippedAndCounted() throws InterruptedException {
+        final long first = mScheduler.awaitFrame();
+        // a frame drawn in 3.5 intervals misses the deadlines of the 2 next frames
+        mClock.advance(INTERVAL * 7 / 2);
+        final long late = mScheduler.awaitFrame();
+        assertEquals(first + 3 * INTERVAL, late);
+        assertEquals(2, mScheduler.getMissedFrames());
+
+        // no burst to catch up: the next frame waits for its deadline
+        final long next = mScheduler.awaitFrame();
+        assertEquals(late + INTERVAL, next);
+        assertEquals(next, mClock.nanoTime());
+        assertEquals(2, mScheduler.getMissedFrames());
+    }
+
+    @Test
+    public void resetDoesNotCountThePause() throws InterruptedException {
+        mScheduler.awaitFrame();
+        mClock.advance(INTERVAL * 7 / 2);
+        mScheduler.awaitFrame();
+        final long missed = mScheduler.getMissedFrames();
+
+        // paused for 100 frames, then the pace restarts from now
+        mClock.advance(100 * INTERVAL);
+        mScheduler.reset();
+        final long resumed = mScheduler.awaitFrame();
+        assertEquals(mClock.nanoTime(), resumed);
+        assertEquals("no frame missed during the pause", missed, mScheduler.getMissedFrames());
+        assertEquals(resumed + INTERVAL, mScheduler.awaitFrame());
+        assertEquals(missed, mScheduler.getMissedFrames());
+    }
+
+    @Test
+    public void setFrameRateChangesTheInterval() throws InterruptedException {
+        assertEquals(FPS, mScheduler.getFrameRate());
+        assertEquals(INTERVAL, mScheduler.getFrameIntervalNanos());
+        final long first = mScheduler.awaitFrame();
+
+        mScheduler.setFrameRate(30);
+        assertEquals(30, mScheduler.getFrameRate());
+        assertEquals(1000000000L / 30, mScheduler.getFrameIntervalNanos());
+        // the deadline already computed is kept, the next ones use the new interval
+        final long second = mScheduler.awaitFrame();
+        assertEquals(first + INTERVAL, second);
+        assertEquals(second + 1000000000L / 30, mScheduler.awaitFrame());
+        assertEquals(0, mScheduler.getMissedFrames());
+
+        try {
+            mScheduler.setFrameRate(0);
+            fail("a frame rate of 0 must be refused");
+        } catch (IllegalArgumentException expected) {
+            assertEquals(30, mScheduler.getFrameRate());
+        }
+    }
+
+    private static class FakeTimeSource implements TimeSource {
+
+        private long mNow;
+
+        FakeTimeSource(long now) {
+            mNow = now;
+        }
+
+        void advance(long nanos) {
+            mNow += nanos;
+        }
+
+        @Override
+        public long nanoTime() {
+            return mNow;
+        }
+
+        @Override
+        public void sleepNanos(long nanos) {
+            mNow += nanos;
+        }
+    }
+}
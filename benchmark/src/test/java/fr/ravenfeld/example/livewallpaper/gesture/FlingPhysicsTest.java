@@ -0,0 +1,113 @@
+package fr.ravenfeld.example.livewallpaper.gesture;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the motion of {@link FlingPhysics} over random flings: continuous at the handoff to
+ * the spring, never past the target, and at rest in bounded time.
+ */
+public class FlingPhysicsTest {
+
+    private static final long SEED = 42;
+    private static final int FLINGS = 2000;
+    private static final long START_NANOS = 1000000000L;
+    private static final long FRAME_NANOS = 16666667L;
+    // a settle lasting longer than this is stuck
+    private static final long MAX_SETTLE_NANOS = 4000000000L;
+    private static final float MAX_VELOCITY = 20000f;
+
+    private final Random mRandom = new Random(SEED);
+    private final FlingPhysics mFling = new FlingPhysics();
+
+    @Test
+    public void velocityIsContinuousAtTheHandoff() {
+        int handoffs = 0;
+        for (int i = 0; i < FLINGS; i++) {
+            startRandomFling();
+            final float decay = mFling.getDecayDuration();
+            if (decay <= 0) {
+                continue;
+            }
+            handoffs++;
+            final long handoff = START_NANOS + (long) (decay * 1000000000.0);
+            final float before = mFling.getVelocity(handoff - 1000);
+            final float after = mFling.getVelocity(handoff + 1000);
+            assertEquals(describe() + " decay=" + decay, before, after, 0.01f * Math.abs(before) + 1f);
+            final float positionBefore = mFling.getPosition(handoff - 1000);
+            final float positionAfter = mFling.getPosition(handoff + 1000);
+            assertEquals(describe() + " decay=" + decay, positionBefore, positionAfter, 0.5f);
+        }
+        assertTrue("no fling handed off to the spring", handoffs > FLINGS / 10);
+    }
+
+    @Test
+    public void neverPassesTheTarget() {
+        for (int i = 0; i < FLINGS; i++) {
+            final float start = startRandomFling();
+            final float target = mFling.getTarget();
+            // the side of the target the fling starts from
+            final float side = Math.signum(start - target);
+            for (long t = START_NANOS; mFling.isRunning() && t < START_NANOS + MAX_SETTLE_NANOS; t += FRAME_NANOS / 4) {
+                final float position = mFling.getPosition(t);
+                assertTrue(describe() + " position=" + position, (position - target) * side >= -0.5f);
+                mFling.isFinished(t);
+            }
+        }
+    }
+
+    @Test
+    public void finishesInBoundedTime() {
+        for (int i = 0; i < FLINGS; i++) {
+            startRandomFling();
+            assertSettles();
+        }
+    }
+
+    @Test
+    public void decayEndingOnTheTargetFinishes() {
+        for (int i = 0; i < FLINGS; i++) {
+            final float position = (mRandom.nextFloat() - 0.5f) * 5000;
+            final float velocity = (mRandom.nextFloat() * 2 - 1) * MAX_VELOCITY;
+            // the decay alone ends exactly on the target
+            mFling.start(position, velocity, position + FlingPhysics.getDecayDistance(velocity), START_NANOS);
+            final float decay = mFling.getDecayDuration();
+            assertTrue(describe() + " decay=" + decay, !Float.isInfinite(decay) && !Float.isNaN(decay));
+            assertSettles();
+        }
+    }
+
+    private void assertSettles() {
+        long t = START_NANOS;
+        while (!mFling.isFinished(t)) {
+            t += FRAME_NANOS;
+            assertTrue(describe() + " still running after " + (t - START_NANOS) + "ns",
+                    t - START_NANOS <= MAX_SETTLE_NANOS);
+        }
+        assertEquals(describe(), mFling.getTarget(), mFling.getPosition(t), 0.5f);
+    }
+
+    /**
+     * Starts a fling towards a page boundary, as the detector does, or released in the middle of
+     * a page against its velocity.
+     *
+     * @return the start position
+     */
+    private float startRandomFling() {
+        final float pageWidth = 200 + mRandom.nextInt(2000);
+        final float position = (mRandom.nextFloat() * 8 - 2) * pageWidth;
+        final float velocity = (mRandom.nextFloat() * 2 - 1) * MAX_VELOCITY;
+        final float target = (float) Math.floor(position / pageWidth + mRandom.nextInt(3) - 0.5f) * pageWidth;
+        mFling.start(position, velocity, target, START_NANOS);
+        return position;
+    }
+
+    private String describe() {
+        return "start=" + mFling.getPosition(START_NANOS) + " velocity=" + mFling.getVelocity(START_NANOS)
+                + " target=" + mFling.getTarget();
+    }
+}
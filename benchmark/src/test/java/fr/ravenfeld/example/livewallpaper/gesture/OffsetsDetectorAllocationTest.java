@@ -0,0 +1,111 @@
+package fr.ravenfeld.example.livewallpaper.gesture;
+
+import android.view.MotionEvent;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a warmed up gesture, from the down event to the end of the settle animation,
+ * allocates nothing on the thread running it, with the Android stand-ins of this module.
+ */
+public class OffsetsDetectorAllocationTest {
+
+    private static final int SCREEN_WIDTH = 1080;
+    private static final int MOVES = 30;
+    private static final long MOVE_MILLIS = 10;
+    private static final long FRAME_NANOS = 16666667L;
+    private static final int WARMUP_GESTURES = 20000;
+    // the lowest count is kept, a round may be disturbed by the class loading of the JVM
+    private static final int MEASURED_ROUNDS = 5;
+
+    private com.sun.management.ThreadMXBean mThreadBean;
+    private OffsetsDetector mDetector;
+    private float mLastOffset;
+
+    // left swipe followed by a right swipe, the detector ends on the page it started from
+    private MotionEvent[] mSwipes;
+
+    @Before
+    public void setUp() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        mThreadBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(mThreadBean.isThreadAllocatedMemorySupported());
+        mThreadBean.setThreadAllocatedMemoryEnabled(true);
+
+        mDetector = new OffsetsDetector(null, new OffsetsDetector.OnOffsetsListener() {
+            @Override
+            public void onOffsetsChanged(float xOffset, float yOffset, float xOffsetStep, float yOffsetStep) {
+                mLastOffset = xOffset;
+            }
+        });
+        mDetector.setScreenWidth(SCREEN_WIDTH);
+        mDetector.setTouchOffsetX(SCREEN_WIDTH);
+
+        mSwipes = new MotionEvent[2 * (MOVES + 2)];
+        final int i = swipe(mSwipes, 0, 0L, 900f, 200f);
+        swipe(mSwipes, i, 1000L, 200f, 900f);
+    }
+
+    private static int swipe(MotionEvent[] events, int i, long downTime, float fromX, float toX) {
+        events[i++] = MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_DOWN, fromX, 500f, 0);
+        for (int move = 1; move <= MOVES; move++) {
+            final float x = fromX + (toX - fromX) * move / MOVES;
+            events[i++] = MotionEvent.obtain(downTime, downTime + move * MOVE_MILLIS, MotionEvent.ACTION_MOVE, x, 500f, 0);
+        }
+        events[i++] = MotionEvent.obtain(downTime, downTime + (MOVES + 1) * MOVE_MILLIS, MotionEvent.ACTION_UP, toX, 500f, 0);
+        return i;
+    }
+
+    @Test
+    public void gestureDoesNotAllocate() {
+        final float start = mDetector.getTouchOffsetX();
+        for (int i = 0; i < WARMUP_GESTURES; i++) {
+            runGestures();
+        }
+        assertEquals("the swipes must bring the pages back", start, mDetector.getTouchOffsetX(), 0f);
+        assertTrue("the swipes must reach the listener", mLastOffset > 0);
+
+        final long threadId = Thread.currentThread().getId();
+        // cost of the measure itself, the bean may allocate to answer
+        long overhead = Long.MAX_VALUE;
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            long before = mThreadBean.getThreadAllocatedBytes(threadId);
+            overhead = Math.min(overhead, mThreadBean.getThreadAllocatedBytes(threadId) - before);
+            before = mThreadBean.getThreadAllocatedBytes(threadId);
+            runGestures();
+            allocated = Math.min(allocated, mThreadBean.getThreadAllocatedBytes(threadId) - before);
+        }
+        assertEquals("bytes allocated by the gestures", 0, allocated - overhead);
+    }
+
+    /**
+     * Swipes to the next page and back, each swipe followed by its settle animation, with the
+     * offsets dispatched once per frame.
+     */
+    private void runGestures() {
+        final int half = mSwipes.length / 2;
+        for (int i = 0; i < mSwipes.length; i++) {
+            mDetector.onTouchEvent(mSwipes[i]);
+            if ((i & 1) == 1) {
+                mDetector.dispatchPendingOffsets();
+            }
+            if (i == half - 1 || i == mSwipes.length - 1) {
+                // the settle animation starts at the release of the finger
+                long frameTimeNanos = mSwipes[i].getEventTime() * 1000000L;
+                while (mDetector.computeScrollOffset(frameTimeNanos)) {
+                    frameTimeNanos += FRAME_NANOS;
+                }
+                mDetector.dispatchPendingOffsets();
+            }
+        }
+    }
+}
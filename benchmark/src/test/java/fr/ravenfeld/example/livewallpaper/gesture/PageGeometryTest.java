@@ -0,0 +1,204 @@
+package fr.ravenfeld.example.livewallpaper.gesture;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the invariants of {@link PageGeometry} over random page counts, widths and positions.
+ * The seed is fixed, a failure is reproduced by running the test again.
+ */
+public class PageGeometryTest {
+
+    private static final long SEED = 42;
+    private static final int GEOMETRIES = 200;
+    private static final int POSITIONS = 500;
+
+    private final Random mRandom = new Random(SEED);
+
+    @Test
+    public void pageAtHoldsThePosition() {
+        for (int g = 0; g < GEOMETRIES; g++) {
+            final PageGeometry geometry = randomGeometry();
+            final int width = geometry.getPageWidth();
+            final float tolerance = tolerance(geometry);
+            for (int i = 0; i < POSITIONS; i++) {
+                final float position = randomPosition(geometry);
+                final int page = geometry.pageAt(position);
+                final String message = describe(geometry, position) + " page=" + page;
+                assertTrue(message, page >= 0 && page <= geometry.getPageCount());
+                if (position <= 0) {
+                    assertEquals(message, 0, page);
+                } else if (position >= geometry.getTotalWidth()) {
+                    assertEquals(message, geometry.getPageCount(), page);
+                } else {
+                    // ]page * width - width, page * width]
+                    assertTrue(message, position <= (float) page * width + tolerance);
+                    assertTrue(message, position > (float) (page - 1) * width - tolerance);
+                }
+                assertTrue(message, geometry.previousPagePosition(position) <= geometry.nextPagePosition(position));
+            }
+        }
+    }
+
+    @Test
+    public void pageAtIsMonotonic() {
+        for (int g = 0; g < GEOMETRIES; g++) {
+            final PageGeometry geometry = randomGeometry();
+            float previous = -geometry.getMaxTouchOverscroll() - 1;
+            int previousPage = geometry.pageAt(previous);
+            for (int i = 0; i < POSITIONS; i++) {
+                final float position = previous + mRandom.nextFloat() * geometry.getPageWidth() / 4;
+                final int page = geometry.pageAt(position);
+                assertTrue(describe(geometry, position), page >= previousPage);
+                previous = position;
+                previousPage = page;
+            }
+        }
+    }
+
+    @Test
+    public void nearestPagePositionIsTheClosestBoundary() {
+        for (int g = 0; g < GEOMETRIES; g++) {
+            final PageGeometry geometry = randomGeometry();
+            final int width = geometry.getPageWidth();
+            final float tolerance = tolerance(geometry);
+            for (int i = 0; i < POSITIONS; i++) {
+                final float position = randomPosition(geometry);
+                final float nearest = geometry.nearestPagePosition(position);
+                final String message = describe(geometry, position) + " nearest=" + nearest;
+                assertTrue(message, geometry.isInBounds(nearest));
+                final int page = Math.round(nearest / width);
+                assertEquals(message, (float) page * width, nearest, 0f);
+                if (geometry.isInBounds(position)) {
+                    assertTrue(message, Math.abs(nearest - position) <= width / 2f + tolerance);
+                } else {
+                    assertEquals(message, geometry.clamp(position), nearest, 0f);
+                }
+                // a settled position stays where it is
+                assertEquals(message, nearest, geometry.nearestPagePosition(nearest), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void clampStaysInBounds() {
+        for (int g = 0; g < GEOMETRIES; g++) {
+            final PageGeometry geometry = randomGeometry();
+            for (int i = 0; i < POSITIONS; i++) {
+                final float position = randomPosition(geometry);
+                final float clamped = geometry.clamp(position);
+                final String message = describe(geometry, position) + " clamped=" + clamped;
+                assertTrue(message, geometry.isInBounds(clamped));
+                assertEquals(message, clamped, geometry.clamp(clamped), 0f);
+                if (geometry.isInBounds(position)) {
+                    assertEquals(message, position, clamped, 0f);
+                }
+                final float touch = geometry.clampTouch(position * 2);
+                assertTrue(message, touch >= -geometry.getMaxTouchOverscroll()
+                        && touch <= geometry.getTotalWidth() + geometry.getMaxTouchOverscroll());
+            }
+        }
+    }
+
+    @Test
+    public void rubberBandNeverGoesPastTheOverscroll() {
+        for (int g = 0; g < GEOMETRIES; g++) {
+            final PageGeometry geometry = randomGeometry();
+            final float tolerance = tolerance(geometry);
+            for (int i = 0; i < POSITIONS; i++) {
+                final float position = randomPosition(geometry);
+                final float displayed = geometry.rubberBand(position);
+                final float clamped = geometry.clamp(position);
+                final String message = describe(geometry, position) + " displayed=" + displayed;
+                if (geometry.isInBounds(position)) {
+                    assertEquals(message, position, displayed, 0f);
+                    continue;
+                }
+                // on the same side of the bound as the finger, slower and never past the overscroll
+                final float overscroll = Math.abs(displayed - clamped);
+                assertTrue(message, (displayed - clamped) * (position - clamped) >= 0);
+                assertTrue(message, overscroll <= geometry.getOverscroll() + tolerance);
+                assertTrue(message, overscroll <= Math.abs(position - clamped) * geometry.getRubberBand() + tolerance);
+            }
+        }
+    }
+
+    @Test
+    public void rubberBandIsMonotonic() {
+        for (int g = 0; g < GEOMETRIES; g++) {
+            final PageGeometry geometry = randomGeometry();
+            float position = -geometry.getMaxTouchOverscroll();
+            float previous = geometry.rubberBand(position);
+            final float end = geometry.getTotalWidth() + geometry.getMaxTouchOverscroll();
+            final float step = Math.max(1, (end - position) / POSITIONS);
+            while (position < end) {
+                position += mRandom.nextFloat() * step;
+                final float displayed = geometry.rubberBand(position);
+                assertTrue(describe(geometry, position), displayed >= previous);
+                previous = displayed;
+            }
+        }
+    }
+
+    @Test
+    public void offsetRoundTrips() {
+        for (int g = 0; g < GEOMETRIES; g++) {
+            final PageGeometry geometry = randomGeometry();
+            final float tolerance = tolerance(geometry);
+            for (int i = 0; i < POSITIONS; i++) {
+                final float position = geometry.clamp(randomPosition(geometry));
+                final float offset = geometry.toOffset(position);
+                final String message = describe(geometry, position) + " offset=" + offset;
+                assertTrue(message, offset >= 0 && offset <= 1);
+                assertEquals(message, position, geometry.fromOffset(offset), tolerance);
+            }
+        }
+    }
+
+    @Test
+    public void emptyPagesHaveASinglePosition() {
+        final PageGeometry geometry = new PageGeometry(1 + mRandom.nextInt(10), 0, 100, PageGeometry.DEFAULT_RUBBER_BAND);
+        for (int i = 0; i < POSITIONS; i++) {
+            final float position = (mRandom.nextFloat() - 0.5f) * 1000;
+            assertEquals(0, geometry.pageAt(position));
+            assertEquals(0f, geometry.nearestPagePosition(position), 0f);
+            assertEquals(0f, geometry.clamp(position), 0f);
+        }
+        assertEquals(0.5f, geometry.toOffset(0), 0f);
+    }
+
+    private PageGeometry randomGeometry() {
+        final int pageCount = 1 + mRandom.nextInt(20);
+        final int pageWidth = 1 + mRandom.nextInt(2000);
+        final float overscroll = mRandom.nextInt(4) == 0 ? 0 : mRandom.nextFloat() * pageWidth;
+        final float rubberBand = 0.05f + mRandom.nextFloat() * 0.95f;
+        return new PageGeometry(pageCount, pageWidth, overscroll, rubberBand);
+    }
+
+    /**
+     * @return a position within the touch overscroll, a page boundary one time in four
+     */
+    private float randomPosition(PageGeometry geometry) {
+        if (mRandom.nextInt(4) == 0) {
+            return (float) mRandom.nextInt(geometry.getPageCount() + 1) * geometry.getPageWidth();
+        }
+        final float min = -geometry.getMaxTouchOverscroll();
+        final float max = geometry.getTotalWidth() + geometry.getMaxTouchOverscroll();
+        return min + mRandom.nextFloat() * (max - min);
+    }
+
+    // rounding of the float positions, a few ulps of the largest one
+    private static float tolerance(PageGeometry geometry) {
+        return 4 * Math.ulp(geometry.getTotalWidth() + geometry.getMaxTouchOverscroll());
+    }
+
+    private static String describe(PageGeometry geometry, float position) {
+        return "pages=" + geometry.getPageCount() + " width=" + geometry.getPageWidth()
+                + " overscroll=" + geometry.getOverscroll() + " rubberBand=" + geometry.getRubberBand()
+                + " position=" + position;
+    }
+}
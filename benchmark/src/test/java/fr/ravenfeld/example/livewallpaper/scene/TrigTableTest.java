@@ -0,0 +1,87 @@
+package fr.ravenfeld.example.livewallpaper.scene;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the error bound of {@link TrigTable} over the whole phase range, at every resolution.
+ */
+public class TrigTableTest {
+
+    private static final long PHASE_PER_TURN = 1L << 32;
+    // rounding of the float entries
+    private static final double FLOAT_ERROR = 1e-6;
+    private static final int RANDOM_PHASES = 100000;
+
+    @Test
+    public void errorIsBoundedOverOneTurn() {
+        final Random random = new Random(42);
+        for (int bits = TrigTable.MIN_RESOLUTION_BITS; bits <= TrigTable.MAX_RESOLUTION_BITS; bits++) {
+            final TrigTable table = TrigTable.get(bits);
+            // four samples per entry, at random places within it
+            final long step = PHASE_PER_TURN >>> (bits + 2);
+            for (long phase = 0; phase < PHASE_PER_TURN; phase += step) {
+                assertBounded(table, (int) (phase + (long) (random.nextDouble() * step)));
+            }
+            for (int i = 0; i < RANDOM_PHASES; i++) {
+                assertBounded(table, random.nextInt());
+            }
+        }
+    }
+
+    @Test
+    public void errorIsBoundedAroundTheWrap() {
+        for (int bits = TrigTable.MIN_RESOLUTION_BITS; bits <= TrigTable.MAX_RESOLUTION_BITS; bits++) {
+            final TrigTable table = TrigTable.get(bits);
+            // the last entry ends at 2 pi, where the phase overflows back to 0
+            for (int phase = -1000; phase <= 1000; phase++) {
+                assertBounded(table, phase);
+            }
+            assertBounded(table, Integer.MAX_VALUE);
+            assertBounded(table, Integer.MIN_VALUE);
+            assertBounded(table, -(int) (PHASE_PER_TURN >>> bits));
+        }
+    }
+
+    @Test
+    public void phaseWrapsAroundAfterOneTurn() {
+        final TrigTable table = TrigTable.getDefault();
+        final Random random = new Random(42);
+        for (int i = 0; i < RANDOM_PHASES; i++) {
+            final double radians = random.nextDouble() * 2 * Math.PI;
+            final int phase = TrigTable.radiansToPhase(radians);
+            final int turned = TrigTable.radiansToPhase(radians + 2 * Math.PI);
+            assertEquals("radians=" + radians, table.sin(phase), table.sin(turned), 0f);
+            assertEquals("radians=" + radians, table.cos(phase), table.cos(turned), 0f);
+            // two half turns of phase overflow onto the same entry
+            assertEquals(table.sin(phase), table.sin(phase + Integer.MIN_VALUE + Integer.MIN_VALUE), 0f);
+        }
+        assertEquals(0, TrigTable.degreesToPhase(360));
+        assertEquals(TrigTable.degreesToPhase(-90), TrigTable.degreesToPhase(270));
+    }
+
+    @Test
+    public void entriesAreExact() {
+        final TrigTable table = TrigTable.getDefault();
+        for (int degrees = 0; degrees < 360; degrees += 90) {
+            final int phase = TrigTable.degreesToPhase(degrees);
+            assertEquals(Math.sin(Math.toRadians(degrees)), table.sin(phase), FLOAT_ERROR);
+            assertEquals(Math.cos(Math.toRadians(degrees)), table.cos(phase), FLOAT_ERROR);
+        }
+    }
+
+    private static void assertBounded(TrigTable table, int phase) {
+        final double radians = TrigTable.phaseToRadians(phase);
+        final double bound = table.getMaxError() + FLOAT_ERROR;
+        final double sinError = Math.abs(table.sin(phase) - Math.sin(radians));
+        final double cosError = Math.abs(table.cos(phase) - Math.cos(radians));
+        if (sinError > bound || cosError > bound) {
+            fail("bits=" + table.getResolutionBits() + " phase=" + phase + " sin error=" + sinError
+                    + " cos error=" + cosError + " bound=" + bound);
+        }
+    }
+}